@@ -3,6 +3,7 @@ package com.example.ridesharing;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 import jakarta.annotation.PostConstruct;
@@ -10,6 +11,7 @@ import jakarta.annotation.PostConstruct;
 @ComponentScan("com.example.ridesharing")
 @SpringBootApplication
 @EnableScheduling
+@EnableAsync
 public class RidesharingApplication {
     public static void main(String[] args) {
         SpringApplication.run(RidesharingApplication.class, args);
@@ -0,0 +1,116 @@
+package com.example.ridesharing.cache;
+
+import com.example.ridesharing.model.NotificationPreference;
+import com.example.ridesharing.repository.NotificationPreferenceRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU near-cache of notification preferences by user id.
+ *
+ * Misses for a whole group of users are read with one $in query, and users without stored
+ * preferences are cached as defaults so they are not looked up again. Updates through
+ * NotificationPreferenceService invalidate the user's entry; a load that overlaps an
+ * invalidation is not cached. Entries also expire after a TTL, which bounds staleness from
+ * updates made on other instances. Cached preferences are shared and must not be modified.
+ */
+@Component
+public class NotificationPreferenceCache {
+    private final NotificationPreferenceRepository preferenceRepository;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long ttlMillis;
+
+    private final AtomicLong version = new AtomicLong();
+    private final Map<String, Entry> entries;
+
+    public NotificationPreferenceCache(NotificationPreferenceRepository preferenceRepository, MeterRegistry meterRegistry,
+                                       @Value("${notification.preferences.cache.enabled:true}") boolean enabled,
+                                       @Value("${notification.preferences.cache.max-entries:10000}") int maxEntries,
+                                       @Value("${notification.preferences.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.preferenceRepository = preferenceRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Preferences of each of the users, with defaults for users who never stored any.
+     */
+    public Map<String, NotificationPreference> getAll(Collection<String> userIds) {
+        Map<String, NotificationPreference> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        long current = version.get();
+        long now = System.currentTimeMillis();
+        if (enabled) {
+            synchronized (entries) {
+                for (String userId : userIds) {
+                    Entry entry = entries.get(userId);
+                    if (entry != null && now - entry.loadedAt <= ttlMillis) {
+                        result.put(userId, entry.preference);
+                    } else if (!result.containsKey(userId)) {
+                        missing.add(userId);
+                    }
+                }
+            }
+        } else {
+            missing.addAll(userIds);
+        }
+        meterRegistry.counter("notifications.preferences.cache", "result", "hit").increment(result.size());
+        if (missing.isEmpty()) {
+            return result;
+        }
+        meterRegistry.counter("notifications.preferences.cache", "result", "miss").increment(missing.size());
+
+        Map<String, NotificationPreference> loaded = new HashMap<>();
+        for (NotificationPreference preference : preferenceRepository.findByUserIdIn(missing)) {
+            loaded.put(preference.getUserId(), preference);
+        }
+        for (String userId : missing) {
+            result.put(userId, loaded.getOrDefault(userId, new NotificationPreference(userId)));
+        }
+        if (enabled) {
+            synchronized (entries) {
+                // An update during the load may have made it stale already; don't cache it
+                if (version.get() == current) {
+                    for (String userId : missing) {
+                        entries.put(userId, new Entry(result.get(userId), now));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    public NotificationPreference get(String userId) {
+        return getAll(List.of(userId)).get(userId);
+    }
+
+    /**
+     * Forget the user's preferences. Called after they are changed.
+     */
+    public void invalidate(String userId) {
+        synchronized (entries) {
+            version.incrementAndGet();
+            entries.remove(userId);
+        }
+    }
+
+    private record Entry(NotificationPreference preference, long loadedAt) {
+    }
+}
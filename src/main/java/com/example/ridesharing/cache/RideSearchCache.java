@@ -0,0 +1,146 @@
+package com.example.ridesharing.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of ride search results keyed on the normalized search parameters.
+ *
+ * Every ride write bumps a global version. Entries remember the version that was current
+ * when their load started, so a page computed before (or concurrently with) a write is
+ * never served after it. Entries also expire after a TTL, which bounds staleness of
+ * time-relative filters such as "departing from now on".
+ */
+@Component
+public class RideSearchCache {
+    private static final Logger logger = LoggerFactory.getLogger(RideSearchCache.class);
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong sizeEvictions = new AtomicLong();
+    private final AtomicLong expiredEvictions = new AtomicLong();
+    private final AtomicLong staleEvictions = new AtomicLong();
+
+    private final Map<String, Entry> entries;
+
+    public RideSearchCache(@Value("${ride.search.cache.enabled:true}") boolean enabled,
+                           @Value("${ride.search.cache.max-entries:1000}") int maxEntries,
+                           @Value("${ride.search.cache.ttl-seconds:30}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > RideSearchCache.this.maxEntries) {
+                    sizeEvictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Build a cache key from search parameters. Callers pass already-normalized values.
+     */
+    public static String key(Object... parts) {
+        StringJoiner joiner = new StringJoiner("|");
+        for (Object part : parts) {
+            joiner.add(String.valueOf(part));
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * Return the cached value for the key, or load, cache and return it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        long current = version.get();
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.version != current) {
+                    entries.remove(key);
+                    staleEvictions.incrementAndGet();
+                } else if (now - entry.createdAt > ttlMillis) {
+                    entries.remove(key);
+                    expiredEvictions.incrementAndGet();
+                } else {
+                    hits.incrementAndGet();
+                    return (T) entry.value;
+                }
+            }
+        }
+        misses.incrementAndGet();
+        T value = loader.get();
+        synchronized (entries) {
+            // A write during the load makes this result stale already; don't cache it
+            if (version.get() == current) {
+                entries.put(key, new Entry(value, current, now));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Mark every cached page as stale. Called after any write that can change search results.
+     */
+    public void invalidate() {
+        long next = version.incrementAndGet();
+        logger.debug("Ride search cache invalidated, version {}", next);
+    }
+
+    public Map<String, Object> stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long lookups = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", size);
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlMillis / 1000);
+        stats.put("version", version.get());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+        stats.put("sizeEvictions", sizeEvictions.get());
+        stats.put("expiredEvictions", expiredEvictions.get());
+        stats.put("staleEvictions", staleEvictions.get());
+        return stats;
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long version;
+        private final long createdAt;
+
+        private Entry(Object value, long version, long createdAt) {
+            this.value = value;
+            this.version = version;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.ridesharing.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint exposing ride search cache statistics at /actuator/searchcache.
+ */
+@Component
+@Endpoint(id = "searchcache")
+public class RideSearchCacheEndpoint {
+    private final RideSearchCache searchCache;
+
+    public RideSearchCacheEndpoint(RideSearchCache searchCache) {
+        this.searchCache = searchCache;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return searchCache.stats();
+    }
+}
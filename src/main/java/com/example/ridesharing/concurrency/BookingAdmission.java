@@ -0,0 +1,214 @@
+package com.example.ridesharing.concurrency;
+
+import com.example.ridesharing.exception.ConflictException;
+import com.example.ridesharing.exception.RideFullException;
+import com.example.ridesharing.model.Ride;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * In-process admission layer in front of the booking write.
+ *
+ * Booking attempts are serialized per ride on one of a fixed number of single-thread
+ * stripes, so at most one claim per ride reaches Mongo at a time. Once a ride is known to be
+ * full, attempts are refused from memory, both at the door and when they reach the front of
+ * the queue. Repeated attempts by the same user on the same ride while one is pending share
+ * its result. The full mark is cleared when a seat is released on this instance and expires
+ * after a short TTL, to pick up seats freed elsewhere.
+ */
+@Component
+public class BookingAdmission {
+    private static final Logger logger = LoggerFactory.getLogger(BookingAdmission.class);
+
+    private final boolean enabled;
+    private final long fullTtlMillis;
+    private final ThreadPoolExecutor[] stripes;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Long> fullUntil = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Ride>> pending = new ConcurrentHashMap<>();
+
+    public BookingAdmission(MeterRegistry meterRegistry,
+                            @Value("${ride.booking.admission.enabled:true}") boolean enabled,
+                            @Value("${ride.booking.admission.stripes:16}") int stripeCount,
+                            @Value("${ride.booking.admission.queue-capacity:1000}") int queueCapacity,
+                            @Value("${ride.booking.admission.full-ttl-ms:10000}") long fullTtlMillis) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.fullTtlMillis = fullTtlMillis;
+        this.stripes = new ThreadPoolExecutor[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            String name = "booking-admission-" + i;
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Run the seat claim for a user on a ride through the ride's stripe and wait for its result.
+     * onBooked runs on the calling thread, once per successful claim, so follow-up work such as
+     * notifications does not hold up the stripe. A user confirming their own seat hold is let
+     * through even when the ride is known to be full, since the held seat is theirs.
+     */
+    public Ride book(String rideId, String username, boolean confirmingHold, Supplier<Ride> claim, Consumer<Ride> onBooked) {
+        if (!enabled) {
+            Ride ride = claim.get();
+            onBooked.accept(ride);
+            return ride;
+        }
+        if (!confirmingHold) {
+            rejectIfKnownFull(rideId);
+        }
+
+        String key = rideId + "\n" + username;
+        CompletableFuture<Ride> future = new CompletableFuture<>();
+        CompletableFuture<Ride> existing = pending.putIfAbsent(key, future);
+        if (existing != null) {
+            count("coalesced");
+            return await(existing);
+        }
+
+        submit(rideId, () -> {
+            try {
+                future.complete(admit(rideId, confirmingHold, claim));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                pending.remove(key, future);
+            }
+        }, () -> pending.remove(key, future));
+
+        Ride ride = await(future);
+        onBooked.accept(ride);
+        return ride;
+    }
+
+    /**
+     * Run another seat-taking operation (such as placing a hold) on the ride's stripe, so it is
+     * serialized with bookings. Refused from memory when the ride is known to be full.
+     */
+    public <T> T exclusive(String rideId, Supplier<T> task) {
+        if (!enabled) {
+            return task.get();
+        }
+        rejectIfKnownFull(rideId);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        submit(rideId, () -> {
+            try {
+                rejectIfKnownFull(rideId);
+                future.complete(task.get());
+            } catch (RideFullException e) {
+                markFull(rideId);
+                future.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }, () -> { });
+        return await(future);
+    }
+
+    /**
+     * Forget that a ride is full, after a seat was freed or its status changed.
+     */
+    public void reopen(String rideId) {
+        fullUntil.remove(rideId);
+    }
+
+    // Runs on the ride's stripe: refuse from memory if an earlier claim filled the ride
+    private Ride admit(String rideId, boolean confirmingHold, Supplier<Ride> claim) {
+        if (!confirmingHold) {
+            rejectIfKnownFull(rideId);
+        }
+        try {
+            Ride ride = claim.get();
+            count("admitted");
+            if (ride.getAvailableSeats() <= 0
+                    || (ride.getMaxPassengers() > 0 && ride.getPassengers().size() >= ride.getMaxPassengers())) {
+                markFull(rideId);
+            }
+            return ride;
+        } catch (RideFullException e) {
+            count("rejected-full");
+            markFull(rideId);
+            throw e;
+        }
+    }
+
+    private void submit(String rideId, Runnable task, Runnable onRejected) {
+        try {
+            stripeFor(rideId).execute(task);
+        } catch (RejectedExecutionException e) {
+            onRejected.run();
+            count("queue-full");
+            throw new ConflictException("Too many booking requests for this ride, please try again");
+        }
+    }
+
+    private void rejectIfKnownFull(String rideId) {
+        if (isKnownFull(rideId)) {
+            count("rejected-full");
+            throw new RideFullException("No seats available");
+        }
+    }
+
+    private boolean isKnownFull(String rideId) {
+        Long until = fullUntil.get(rideId);
+        if (until == null) {
+            return false;
+        }
+        if (until < System.currentTimeMillis()) {
+            fullUntil.remove(rideId, until);
+            return false;
+        }
+        return true;
+    }
+
+    private void markFull(String rideId) {
+        fullUntil.put(rideId, System.currentTimeMillis() + fullTtlMillis);
+        logger.debug("Ride {} is full, refusing further bookings from memory", rideId);
+    }
+
+    private ThreadPoolExecutor stripeFor(String rideId) {
+        return stripes[Math.floorMod(rideId.hashCode(), stripes.length)];
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("rides.booking.admission", "outcome", outcome).increment();
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.ridesharing.concurrency;
+
+import com.example.ridesharing.exception.BadRequestException;
+import com.example.ridesharing.exception.ConflictException;
+import com.example.ridesharing.model.IdempotencyRecord;
+import com.example.ridesharing.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Replays the response of a write that was already made with the same Idempotency-Key.
+ *
+ * Keys are scoped to the user. The first request with a key claims it in the
+ * idempotency_keys collection, so a retry arriving on another node while it runs is refused
+ * rather than run twice. A successful response is stored there and in a bounded in-memory LRU,
+ * and later requests with the key get it back without running the action again. Failed
+ * requests release the key so they can be retried. A claim left behind by a node that died
+ * mid-request can be taken over after a short timeout; each claim carries an owner token, so a
+ * request whose claim was taken over can no longer complete or release it.
+ */
+@Component
+public class IdempotencyStore {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final long inProgressTimeoutMillis;
+
+    private final Map<String, IdempotencyRecord> recent;
+
+    public IdempotencyStore(IdempotencyRecordRepository recordRepository, MongoTemplate mongoTemplate, ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${ride.idempotency.enabled:true}") boolean enabled,
+                            @Value("${ride.idempotency.max-entries:10000}") int maxEntries,
+                            @Value("${ride.idempotency.ttl-hours:24}") long ttlHours,
+                            @Value("${ride.idempotency.in-progress-timeout-seconds:60}") long inProgressTimeoutSeconds) {
+        this.recordRepository = recordRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.ttlMillis = ttlHours * 3600 * 1000;
+        this.inProgressTimeoutMillis = inProgressTimeoutSeconds * 1000;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Digest of a request body, to tell a retry from a different request reusing the key.
+     */
+    public String digest(Object body) {
+        try {
+            return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(body));
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Could not read request body");
+        }
+    }
+
+    /**
+     * Run the action once per user and key. Without a key the action simply runs.
+     * The request string identifies what the key was used for (method, path and body digest).
+     */
+    public ResponseEntity<?> execute(String username, String key, String request, Supplier<ResponseEntity<?>> action) {
+        if (!enabled || key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        String id = username + "\n" + key;
+
+        IdempotencyRecord cached = cached(id);
+        if (cached != null) {
+            return replay(cached, request, "memory");
+        }
+        String owner = UUID.randomUUID().toString();
+        IdempotencyRecord existing = claim(id, request, owner);
+        if (existing != null) {
+            remember(existing);
+            return replay(existing, request, "store");
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            release(id, owner);
+            throw e;
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            release(id, owner);
+            return response;
+        }
+        String body = null;
+        if (response.hasBody()) {
+            try {
+                body = objectMapper.writeValueAsString(response.getBody());
+            } catch (JsonProcessingException e) {
+                // The action ran: keep the key so a retry cannot run it again, and replay the status without a body
+                logger.warn("Could not serialize response for idempotency key, storing the status only: {}", e.getMessage());
+            }
+        }
+        complete(id, owner, response.getStatusCode().value(), body);
+        return response;
+    }
+
+    // Store the response on the claim this request owns
+    private void complete(String id, String owner, int statusCode, String body) {
+        Update update = new Update()
+                .set("completed", true)
+                .set("statusCode", statusCode)
+                .set("body", body)
+                .set("expiresAt", new Date(System.currentTimeMillis() + ttlMillis));
+        try {
+            IdempotencyRecord stored = mongoTemplate.findAndModify(owned(id, owner), update,
+                    FindAndModifyOptions.options().returnNew(true), IdempotencyRecord.class);
+            if (stored == null) {
+                count("claim-lost");
+                logger.warn("Idempotency claim was taken over before the response could be stored");
+                return;
+            }
+            remember(stored);
+            count("stored");
+        } catch (RuntimeException e) {
+            // The claim stays in place until it times out, refusing retries in the meantime
+            logger.warn("Could not store response for idempotency key: {}", e.getMessage());
+        }
+    }
+
+    // Give up the claim after a failed request, unless another request has taken it over since
+    private void release(String id, String owner) {
+        try {
+            mongoTemplate.remove(owned(id, owner).addCriteria(Criteria.where("completed").is(false)), IdempotencyRecord.class);
+        } catch (RuntimeException e) {
+            logger.warn("Could not release idempotency key: {}", e.getMessage());
+        }
+    }
+
+    private static Query owned(String id, String owner) {
+        return new Query(Criteria.where("id").is(id).and("owner").is(owner));
+    }
+
+    // Claim the key for this request. Returns the completed record when the key was already used.
+    private IdempotencyRecord claim(String id, String request, String owner) {
+        long now = System.currentTimeMillis();
+        try {
+            recordRepository.insert(new IdempotencyRecord(id, request, owner, new Date(now + inProgressTimeoutMillis)));
+            return null;
+        } catch (DuplicateKeyException e) {
+            // Fall through to inspect the existing record
+        }
+        IdempotencyRecord existing = recordRepository.findById(id).orElse(null);
+        if (existing != null && existing.isCompleted() && existing.getExpiresAt().getTime() > now) {
+            return existing;
+        }
+        // Take over a claim whose request never finished, or a record the TTL monitor has not removed yet
+        Query abandoned = new Query(new Criteria().andOperator(
+                Criteria.where("id").is(id),
+                Criteria.where("expiresAt").lt(new Date(now))));
+        Update update = new Update()
+                .set("request", request)
+                .set("owner", owner)
+                .set("completed", false)
+                .unset("statusCode")
+                .unset("body")
+                .set("expiresAt", new Date(now + inProgressTimeoutMillis));
+        if (existing != null && mongoTemplate.findAndModify(abandoned, update, FindAndModifyOptions.options().returnNew(true),
+                IdempotencyRecord.class) != null) {
+            return null;
+        }
+        count("in-progress");
+        throw new ConflictException("A request with this " + HEADER + " is still being processed");
+    }
+
+    private ResponseEntity<?> replay(IdempotencyRecord record, String request, String source) {
+        if (!record.getRequest().equals(request)) {
+            count("mismatch");
+            throw new BadRequestException(HEADER + " was already used for a different request");
+        }
+        count("replayed-" + source);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(record.getStatusCode()).header(REPLAYED_HEADER, "true");
+        if (record.getBody() == null) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON).body(record.getBody());
+    }
+
+    private IdempotencyRecord cached(String id) {
+        synchronized (recent) {
+            IdempotencyRecord record = recent.get(id);
+            if (record != null && record.getExpiresAt().getTime() <= System.currentTimeMillis()) {
+                recent.remove(id);
+                return null;
+            }
+            return record;
+        }
+    }
+
+    private void remember(IdempotencyRecord record) {
+        synchronized (recent) {
+            recent.put(record.getId(), record);
+        }
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("rides.idempotency", "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.ridesharing.concurrency;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator endpoint listing the rides with the most write conflicts at /actuator/ridecontention.
+ */
+@Component
+@Endpoint(id = "ridecontention")
+public class RideContentionEndpoint {
+    private static final int TOP_RIDES = 20;
+
+    private final RideWriteRetry writeRetry;
+
+    public RideContentionEndpoint(RideWriteRetry writeRetry) {
+        this.writeRetry = writeRetry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> contention() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("trackedRides", writeRetry.trackedRides());
+        result.put("rides", writeRetry.topContended(TOP_RIDES));
+        return result;
+    }
+}
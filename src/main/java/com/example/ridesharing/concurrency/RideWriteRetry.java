@@ -0,0 +1,136 @@
+package com.example.ridesharing.concurrency;
+
+import com.example.ridesharing.exception.ConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs read-modify-write operations on a ride with bounded retry on optimistic locking conflicts.
+ *
+ * Each attempt must re-read the ride, so a retry applies its change to the latest version.
+ * Between attempts the caller backs off for a random time up to an exponentially growing cap
+ * ("full jitter"), which spreads competing writers apart. Conflicts and retries are counted
+ * globally in Micrometer and per ride in memory, for the ridecontention actuator endpoint.
+ */
+@Component
+public class RideWriteRetry {
+    private static final Logger logger = LoggerFactory.getLogger(RideWriteRetry.class);
+
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxTrackedRides;
+
+    private final Counter conflictCounter;
+    private final Counter retryCounter;
+    private final Counter exhaustedCounter;
+    private final Map<String, Contention> contention = new ConcurrentHashMap<>();
+
+    public RideWriteRetry(MeterRegistry meterRegistry,
+                          @Value("${ride.write.retry.max-attempts:5}") int maxAttempts,
+                          @Value("${ride.write.retry.base-backoff-ms:10}") long baseBackoffMillis,
+                          @Value("${ride.write.retry.max-backoff-ms:200}") long maxBackoffMillis,
+                          @Value("${ride.write.contention.max-tracked-rides:1000}") int maxTrackedRides) {
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxTrackedRides = maxTrackedRides;
+        this.conflictCounter = meterRegistry.counter("rides.write.conflicts");
+        this.retryCounter = meterRegistry.counter("rides.write.retries");
+        this.exhaustedCounter = meterRegistry.counter("rides.write.retries.exhausted");
+    }
+
+    /**
+     * Run the attempt, retrying on optimistic locking conflicts up to the configured number of attempts.
+     * Throws ConflictException when every attempt conflicted.
+     */
+    public <T> T run(String rideId, Supplier<T> attempt) {
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                return attempt.get();
+            } catch (OptimisticLockingFailureException e) {
+                conflictCounter.increment();
+                Contention stats = track(rideId);
+                stats.conflicts.increment();
+                stats.lastConflict = Instant.now();
+                if (attemptNumber >= maxAttempts) {
+                    exhaustedCounter.increment();
+                    logger.warn("Giving up on ride {} after {} conflicting writes", rideId, attemptNumber);
+                    throw new ConflictException("Ride was modified concurrently, please try again");
+                }
+                retryCounter.increment();
+                stats.retries.increment();
+                logger.debug("Write conflict on ride {}, retrying (attempt {})", rideId, attemptNumber + 1);
+                backoff(attemptNumber);
+            }
+        }
+    }
+
+    /**
+     * The most contended rides, by conflict count.
+     */
+    public List<Map<String, Object>> topContended(int limit) {
+        List<Map.Entry<String, Contention>> entries = new ArrayList<>(contention.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, Contention> e) -> e.getValue().conflicts.sum()).reversed());
+        List<Map<String, Object>> top = new ArrayList<>();
+        for (Map.Entry<String, Contention> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+            Map<String, Object> ride = new LinkedHashMap<>();
+            ride.put("rideId", entry.getKey());
+            ride.put("conflicts", entry.getValue().conflicts.sum());
+            ride.put("retries", entry.getValue().retries.sum());
+            ride.put("lastConflict", entry.getValue().lastConflict);
+            top.add(ride);
+        }
+        return top;
+    }
+
+    public int trackedRides() {
+        return contention.size();
+    }
+
+    // Counters for a ride; when too many rides are tracked, the least contended one makes room
+    private Contention track(String rideId) {
+        Contention stats = contention.get(rideId);
+        if (stats != null) {
+            return stats;
+        }
+        if (contention.size() >= maxTrackedRides) {
+            contention.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().conflicts.sum()))
+                    .ifPresent(e -> contention.remove(e.getKey()));
+        }
+        return contention.computeIfAbsent(rideId, k -> new Contention());
+    }
+
+    private void backoff(int attemptNumber) {
+        long cap = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attemptNumber - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Ride was modified concurrently, please try again");
+        }
+    }
+
+    private static final class Contention {
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private volatile Instant lastConflict;
+    }
+}
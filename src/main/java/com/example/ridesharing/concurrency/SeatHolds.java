@@ -0,0 +1,184 @@
+package com.example.ridesharing.concurrency;
+
+import com.example.ridesharing.cache.RideSearchCache;
+import com.example.ridesharing.model.SeatHold;
+import com.example.ridesharing.repository.SeatHoldRepository;
+import com.example.ridesharing.util.TimingWheel;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Active seat holds, per ride and user.
+ *
+ * Holds are kept in concurrent maps so reads (seat counts for search) never lock. Each hold is
+ * also written to the seat_holds collection and reloaded at startup, so a restart does not
+ * silently free held seats. Expired holds are reclaimed by a timing wheel; a hold that was
+ * confirmed or released before its deadline is simply no longer in the map when it fires.
+ * Creating and confirming holds is serialized per ride by BookingAdmission.
+ */
+@Component
+public class SeatHolds {
+    private static final Logger logger = LoggerFactory.getLogger(SeatHolds.class);
+
+    private final SeatHoldRepository seatHoldRepository;
+    private final BookingAdmission bookingAdmission;
+    private final RideSearchCache searchCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long ttlMillis;
+    private final TimingWheel<SeatHold> wheel;
+
+    private final Map<String, Map<String, SeatHold>> holdsByRide = new ConcurrentHashMap<>();
+
+    public SeatHolds(SeatHoldRepository seatHoldRepository, BookingAdmission bookingAdmission, RideSearchCache searchCache,
+                     ApplicationEventPublisher eventPublisher,
+                     @Value("${ride.booking.hold.ttl-seconds:120}") long ttlSeconds) {
+        this.seatHoldRepository = seatHoldRepository;
+        this.bookingAdmission = bookingAdmission;
+        this.searchCache = searchCache;
+        this.eventPublisher = eventPublisher;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.wheel = new TimingWheel<>("seat-hold-expiry", 1000, 512, this::expire);
+    }
+
+    /**
+     * Restore holds that had not expired when the application last stopped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        try {
+            int restored = 0;
+            for (SeatHold hold : seatHoldRepository.findByExpiresAtAfter(new Date())) {
+                track(hold);
+                restored++;
+            }
+            if (restored > 0) {
+                logger.info("Restored {} seat holds", restored);
+                searchCache.invalidate();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not restore seat holds: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Hold a seat for the user, or extend their existing hold. The caller checks seat availability.
+     */
+    public SeatHold hold(String rideId, String username) {
+        SeatHold hold = new SeatHold(UUID.randomUUID().toString(), rideId, username,
+                new Date(System.currentTimeMillis() + ttlMillis));
+        Map<String, SeatHold> holds = holdsByRide.get(rideId);
+        SeatHold previous = holds == null ? null : holds.get(username);
+        if (previous != null) {
+            hold.setId(previous.getId());
+        }
+        seatHoldRepository.save(hold);
+        track(hold);
+        searchCache.invalidate();
+        return hold;
+    }
+
+    /**
+     * The user's active hold on a ride, or null.
+     */
+    public SeatHold find(String rideId, String username) {
+        Map<String, SeatHold> holds = holdsByRide.get(rideId);
+        SeatHold hold = holds == null ? null : holds.get(username);
+        return hold != null && isActive(hold) ? hold : null;
+    }
+
+    /**
+     * Drop the user's hold on a ride, after it was confirmed or given up. Returns whether one existed.
+     */
+    public boolean release(String rideId, String username) {
+        SeatHold[] removed = new SeatHold[1];
+        holdsByRide.computeIfPresent(rideId, (k, holds) -> {
+            removed[0] = holds.remove(username);
+            return holds.isEmpty() ? null : holds;
+        });
+        SeatHold hold = removed[0];
+        if (hold == null) {
+            return false;
+        }
+        seatHoldRepository.deleteById(hold.getId());
+        bookingAdmission.reopen(rideId);
+        searchCache.invalidate();
+        return isActive(hold);
+    }
+
+    /**
+     * Seats on the ride held by anyone other than the given user.
+     */
+    public int heldByOthers(String rideId, String username) {
+        return heldByOthers(rideId, Set.of(username));
+    }
+
+    /**
+     * Seats on the ride held by anyone outside the given group of users.
+     */
+    public int heldByOthers(String rideId, Collection<String> usernames) {
+        Map<String, SeatHold> holds = holdsByRide.get(rideId);
+        if (holds == null) {
+            return 0;
+        }
+        int held = 0;
+        for (SeatHold hold : holds.values()) {
+            if (isActive(hold) && !usernames.contains(hold.getUsername())) {
+                held++;
+            }
+        }
+        return held;
+    }
+
+    public int held(String rideId) {
+        return heldByOthers(rideId, Set.of());
+    }
+
+    // Per-ride maps are only created and dropped inside compute calls, so an add never lands in a dropped map
+    private void track(SeatHold hold) {
+        holdsByRide.compute(hold.getRideId(), (k, holds) -> {
+            Map<String, SeatHold> rideHolds = holds != null ? holds : new ConcurrentHashMap<>();
+            rideHolds.put(hold.getUsername(), hold);
+            return rideHolds;
+        });
+        wheel.schedule(hold, hold.getExpiresAt().getTime());
+    }
+
+    // Wheel callback: reclaim the seat unless the hold was released, confirmed or extended since
+    private void expire(SeatHold hold) {
+        boolean[] removed = new boolean[1];
+        holdsByRide.computeIfPresent(hold.getRideId(), (k, holds) -> {
+            removed[0] = holds.remove(hold.getUsername(), hold);
+            return holds.isEmpty() ? null : holds;
+        });
+        if (!removed[0]) {
+            return;
+        }
+        // The TTL index removes the backup document
+        bookingAdmission.reopen(hold.getRideId());
+        searchCache.invalidate();
+        logger.debug("Seat hold for {} on ride {} expired", hold.getUsername(), hold.getRideId());
+        eventPublisher.publishEvent(new SeatReleasedEvent(hold.getRideId()));
+    }
+
+    private static boolean isActive(SeatHold hold) {
+        return hold.getExpiresAt().getTime() > System.currentTimeMillis();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wheel.stop();
+    }
+}
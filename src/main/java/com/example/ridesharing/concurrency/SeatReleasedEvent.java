@@ -0,0 +1,8 @@
+package com.example.ridesharing.concurrency;
+
+/**
+ * Published when a seat on a ride becomes free outside a booking request, such as an expired hold.
+ * Published on the timing-wheel thread, so listeners must not block it: handle it with @Async.
+ */
+public record SeatReleasedEvent(String rideId) {
+}
@@ -0,0 +1,190 @@
+package com.example.ridesharing.config;
+
+import com.example.ridesharing.model.Booking;
+import com.example.ridesharing.model.IdempotencyRecord;
+import com.example.ridesharing.model.Notification;
+import com.example.ridesharing.model.NotificationOutboxEntry;
+import com.example.ridesharing.model.NotificationPreference;
+import com.example.ridesharing.model.Rating;
+import com.example.ridesharing.model.Ride;
+import com.example.ridesharing.model.SeatHold;
+import com.example.ridesharing.model.User;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Owns the managed index set declared on the model classes.
+ *
+ * Automatic index creation is switched off so startup does not block on index builds.
+ * Once the application is ready, this compares the declared indexes with listIndexes,
+ * builds any missing ones off the startup thread, and then explains the hot queries.
+ * A COLLSCAN plan is logged as a warning, or fails startup when ride.indexes.strict is set.
+ */
+@Component
+public class MongoIndexVerifier {
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexVerifier.class);
+
+    private static final List<Class<?>> MANAGED_TYPES = List.of(
+            Ride.class, Booking.class, User.class, Notification.class, NotificationPreference.class, Rating.class, SeatHold.class,
+            IdempotencyRecord.class, NotificationOutboxEntry.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final boolean strict;
+
+    public MongoIndexVerifier(MongoTemplate mongoTemplate,
+                              @Value("${ride.indexes.verify:true}") boolean enabled,
+                              @Value("${ride.indexes.strict:false}") boolean strict) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.strict = strict;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyIndexes() {
+        if (!enabled) {
+            return;
+        }
+        if (strict) {
+            // Strict mode must be able to fail startup, so run on the startup thread
+            ensureIndexes();
+            List<String> scans = findCollectionScans();
+            if (!scans.isEmpty()) {
+                throw new IllegalStateException("Hot queries are not served by an index: " + scans);
+            }
+            return;
+        }
+        Thread worker = new Thread(() -> {
+            try {
+                ensureIndexes();
+                findCollectionScans().forEach(scan -> logger.warn("Hot query is not served by an index: {}", scan));
+            } catch (RuntimeException e) {
+                logger.warn("Index verification failed: {}", e.getMessage());
+            }
+        }, "mongo-index-verifier");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Build every declared index that listIndexes does not report
+    private void ensureIndexes() {
+        IndexResolver resolver = IndexResolver.create(
+                (MongoMappingContext) mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> type : MANAGED_TYPES) {
+            String collection = mongoTemplate.getCollectionName(type);
+            List<Document> existing = mongoTemplate.getCollection(collection).listIndexes().into(new ArrayList<>());
+            for (IndexDefinition definition : resolver.resolveIndexFor(type)) {
+                boolean present = existing.stream()
+                        .anyMatch(index -> sameKeys(index.get("key", Document.class), definition.getIndexKeys()));
+                if (present) {
+                    continue;
+                }
+                logger.info("Building missing index {} on {}", definition.getIndexKeys().toJson(), collection);
+                try {
+                    mongoTemplate.indexOps(type).ensureIndex(definition);
+                } catch (RuntimeException e) {
+                    logger.warn("Could not build index {} on {}: {}", definition.getIndexKeys().toJson(), collection, e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Explain each hot query and report the ones whose winning plan scans the whole collection
+    private List<String> findCollectionScans() {
+        Date now = new Date();
+        List<HotQuery> hotQueries = List.of(
+                new HotQuery("rides", "search",
+                        new Document("status", new Document("$in", List.of("SCHEDULED")))
+                                .append("departureTime", new Document("$gte", now))
+                                .append("availableSeats", new Document("$gt", 0)),
+                        new Document("departureTime", 1)),
+                new HotQuery("rides", "departure reminders",
+                        new Document("status", "SCHEDULED").append("departureTime", new Document("$gte", now)),
+                        new Document()),
+                new HotQuery("rides", "my driven rides",
+                        new Document("driverUsername", "").append("status", new Document("$in", List.of("COMPLETED"))),
+                        new Document("departureTime", -1)),
+                new HotQuery("bookings", "my bookings",
+                        new Document("studentId", "").append("status", "CONFIRMED"),
+                        new Document()),
+                new HotQuery("users", "user by username",
+                        new Document("username", ""), new Document()),
+                new HotQuery("notifications", "notifications by user",
+                        new Document("userId", ""), new Document("timestamp", -1)),
+                new HotQuery("notifications", "unread count",
+                        new Document("userId", "").append("read", false), new Document()),
+                new HotQuery("notification_preferences", "preferences by user",
+                        new Document("userId", ""), new Document())
+        );
+
+        List<String> scans = new ArrayList<>();
+        for (HotQuery hotQuery : hotQueries) {
+            Document find = new Document("find", hotQuery.collection()).append("filter", hotQuery.filter());
+            if (!hotQuery.sort().isEmpty()) {
+                find.append("sort", hotQuery.sort());
+            }
+            Document explain = mongoTemplate.getDb().runCommand(
+                    new Document("explain", find).append("verbosity", "queryPlanner"));
+            Document planner = explain.get("queryPlanner", Document.class);
+            if (planner != null && containsStage(planner.get("winningPlan"), "COLLSCAN")) {
+                scans.add(hotQuery.name() + " on " + hotQuery.collection());
+            }
+        }
+        return scans;
+    }
+
+    // Walk a plan tree (inputStage, inputStages, queryPlan, ...) looking for a stage name
+    private static boolean containsStage(Object node, String stage) {
+        if (node instanceof Map<?, ?> map) {
+            if (stage.equals(map.get("stage"))) {
+                return true;
+            }
+            return map.values().stream().anyMatch(value -> containsStage(value, stage));
+        }
+        if (node instanceof List<?> list) {
+            return list.stream().anyMatch(value -> containsStage(value, stage));
+        }
+        return false;
+    }
+
+    // Same fields in the same order with the same direction/type; numeric directions compare by value
+    private static boolean sameKeys(Document existing, Document declared) {
+        if (existing == null || existing.size() != declared.size()) {
+            return false;
+        }
+        List<String> existingFields = new ArrayList<>(existing.keySet());
+        List<String> declaredFields = new ArrayList<>(declared.keySet());
+        for (int i = 0; i < declaredFields.size(); i++) {
+            String field = declaredFields.get(i);
+            if (!field.equals(existingFields.get(i))) {
+                return false;
+            }
+            Object a = existing.get(field);
+            Object b = declared.get(field);
+            boolean same = (a instanceof Number x && b instanceof Number y)
+                    ? x.intValue() == y.intValue()
+                    : String.valueOf(a).equals(String.valueOf(b));
+            if (!same) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private record HotQuery(String collection, String name, Document filter, Document sort) {
+    }
+}
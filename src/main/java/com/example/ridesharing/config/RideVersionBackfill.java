@@ -0,0 +1,44 @@
+package com.example.ridesharing.config;
+
+import com.example.ridesharing.model.Ride;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gives rides stored before Ride had a version field an initial version.
+ *
+ * Spring Data treats an entity with a null version as new, so saving such a ride would try
+ * to insert it again. This runs during context startup, before requests are served.
+ */
+@Component
+public class RideVersionBackfill {
+    private static final Logger logger = LoggerFactory.getLogger(RideVersionBackfill.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    public RideVersionBackfill(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void backfillVersions() {
+        try {
+            // Raw collection update: the template would otherwise $inc the missing version as well
+            long updated = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Ride.class))
+                    .updateMany(new Query(Criteria.where("version").exists(false)).getQueryObject(),
+                            new Update().set("version", 0L).getUpdateObject())
+                    .getModifiedCount();
+            if (updated > 0) {
+                logger.info("Initialized version on {} rides", updated);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not initialize ride versions: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.ridesharing.config;
+
+import com.example.ridesharing.notification.NotificationWebSocketHandler;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+    private final NotificationWebSocketHandler notificationWebSocketHandler;
+
+    public WebSocketConfig(NotificationWebSocketHandler notificationWebSocketHandler) {
+        this.notificationWebSocketHandler = notificationWebSocketHandler;
+    }
+
+    // Same events as /api/notifications/stream, for clients that prefer a WebSocket
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(notificationWebSocketHandler, "/api/notifications/ws");
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.ridesharing.controller;
 
+import com.example.ridesharing.enums.BookingStatus;
 import com.example.ridesharing.model.User;
 import com.example.ridesharing.model.Ride;
 import com.example.ridesharing.model.Booking;
@@ -64,11 +65,13 @@ public class AdminController {
         long totalRides = rideRepository.count();
         long completedRides = rideRepository.findAll().stream().filter(r -> r.getStatus().toString().equals("COMPLETED")).count();
         long activeUsers = userRepository.findAll().stream().filter(User::isActive).count();
+        long activeBookings = bookingRepository.countByStatus(BookingStatus.CONFIRMED);
         return ResponseEntity.ok(Map.of(
             "totalUsers", totalUsers,
             "totalRides", totalRides,
             "completedRides", completedRides,
-            "activeUsers", activeUsers
+            "activeUsers", activeUsers,
+            "activeBookings", activeBookings
         ));
     }
 }
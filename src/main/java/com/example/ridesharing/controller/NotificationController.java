@@ -1,14 +1,21 @@
 package com.example.ridesharing.controller;
 
 import com.example.ridesharing.dto.PagedResponse;
+import com.example.ridesharing.exception.BadRequestException;
 import com.example.ridesharing.model.Notification;
 import com.example.ridesharing.service.NotificationService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/notifications")
@@ -40,6 +47,24 @@ public class NotificationController {
         return ResponseEntity.ok(response);
     }
 
+    // Old unread notifications moved to the archive, newest first
+    @GetMapping("/archived")
+    public ResponseEntity<PagedResponse<Notification>> getArchivedNotifications(
+            Authentication authentication,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        Page<Notification> notifications = notificationService.getArchivedNotifications(
+                authentication.getName(), PageRequest.of(page, size));
+        return ResponseEntity.ok(new PagedResponse<>(
+            notifications.getContent(),
+            notifications.getNumber(),
+            notifications.getSize(),
+            notifications.getTotalElements(),
+            notifications.getTotalPages(),
+            notifications.isLast()
+        ));
+    }
+
     @GetMapping("/unread-count")
     public ResponseEntity<Long> getUnreadCount(Authentication authentication) {
         String userId = authentication.getName();
@@ -47,18 +72,51 @@ public class NotificationController {
         return ResponseEntity.ok(count);
     }
 
+    // Server-sent events: new notifications and unread count changes, instead of polling
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamNotifications(Authentication authentication) {
+        return notificationService.subscribe(authentication.getName());
+    }
+
     @PutMapping("/{notificationId}/read")
     public ResponseEntity<Void> markAsRead(
             Authentication authentication,
             @PathVariable String notificationId) {
-        notificationService.markAsRead(notificationId);
+        // Unknown ids and other users' notifications look the same
+        if (!notificationService.markAsRead(authentication.getName(), notificationId)) {
+            return ResponseEntity.notFound().build();
+        }
         return ResponseEntity.ok().build();
     }
 
     @PutMapping("/mark-all-read")
-    public ResponseEntity<Void> markAllAsRead(Authentication authentication) {
+    public ResponseEntity<Map<String, Long>> markAllAsRead(Authentication authentication) {
         String userId = authentication.getName();
-        notificationService.markAllAsRead(userId);
-        return ResponseEntity.ok().build();
+        return ResponseEntity.ok(Map.of("updated", notificationService.markAllAsRead(userId)));
+    }
+
+    // Mark notifications received up to a point in time as read
+    @PutMapping("/mark-read-before")
+    public ResponseEntity<Map<String, Long>> markReadBefore(
+            Authentication authentication,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before) {
+        return ResponseEntity.ok(Map.of("updated", notificationService.markReadBefore(authentication.getName(), before)));
+    }
+
+    // Mark notifications about one ride as read
+    @PutMapping("/rides/{rideId}/mark-read")
+    public ResponseEntity<Map<String, Long>> markReadForRide(Authentication authentication, @PathVariable String rideId) {
+        return ResponseEntity.ok(Map.of("updated", notificationService.markReadForRide(authentication.getName(), rideId)));
+    }
+
+    // Delete read notifications older than the given number of days
+    @DeleteMapping("/read")
+    public ResponseEntity<Map<String, Long>> deleteRead(
+            Authentication authentication,
+            @RequestParam(defaultValue = "30") int olderThanDays) {
+        if (olderThanDays < 0) {
+            throw new BadRequestException("olderThanDays must be zero or positive");
+        }
+        return ResponseEntity.ok(Map.of("deleted", notificationService.deleteReadOlderThan(authentication.getName(), olderThanDays)));
     }
 }
@@ -1,27 +1,44 @@
 package com.example.ridesharing.controller;
 
+import com.example.ridesharing.concurrency.IdempotencyStore;
+import com.example.ridesharing.dto.GroupBookingRequest;
+import com.example.ridesharing.dto.NearbyRideDTO;
 import com.example.ridesharing.dto.PagedResponse;
+import com.example.ridesharing.dto.RideSummary;
+import com.example.ridesharing.dto.RouteMatchDTO;
 import com.example.ridesharing.enums.RideStatus;
 import com.example.ridesharing.model.Ride;
+import com.example.ridesharing.model.SeatHold;
 import com.example.ridesharing.service.RideService;
 import com.example.ridesharing.repository.UserRepository;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import jakarta.validation.Valid;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.time.LocalDateTime;
 import java.util.Map;
@@ -33,16 +50,31 @@ public class RideController {
     private static final Logger logger = LoggerFactory.getLogger(RideController.class);
     private final RideService rideService;
     private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyStore idempotencyStore;
+    private final AsyncTaskExecutor exportExecutor;
+    private final long exportTimeoutMillis;
 
-    public RideController(RideService rideService, UserRepository userRepository) {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int EXPORT_CHUNK_BYTES = 64 * 1024;
+
+    public RideController(RideService rideService, UserRepository userRepository, ObjectMapper objectMapper,
+                          IdempotencyStore idempotencyStore,
+                          @Qualifier("applicationTaskExecutor") AsyncTaskExecutor exportExecutor,
+                          @Value("${ride.export.timeout-ms:1800000}") long exportTimeoutMillis) {
         this.rideService = rideService;
         this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.idempotencyStore = idempotencyStore;
+        this.exportExecutor = exportExecutor;
+        this.exportTimeoutMillis = exportTimeoutMillis;
     }
 
     // Create a new ride
     @PostMapping
     @PreAuthorize("hasAuthority('ROLE_DRIVER')")
-    public ResponseEntity<Ride> createRide(@Valid @RequestBody Ride ride) {
+    public ResponseEntity<?> createRide(@Valid @RequestBody Ride ride,
+                                        @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
         ride.setDriverUsername(username);
         ride.setStatus(RideStatus.SCHEDULED);
@@ -50,7 +82,9 @@ public class RideController {
         if (ride.getPrice() < 0) {
             ride.setPrice(0.0); // Set a default price if negative
         }
-        return ResponseEntity.ok(rideService.createRide(ride));
+        String request = "POST /api/rides " + (idempotencyKey != null ? idempotencyStore.digest(ride) : "");
+        return idempotencyStore.execute(username, idempotencyKey, request,
+                () -> ResponseEntity.ok(rideService.createRide(ride)));
     }
 
     // Get a ride by ID
@@ -96,8 +130,14 @@ public class RideController {
     // Book a ride
     @PostMapping("/{rideId}/book")
     @PreAuthorize("hasAuthority('ROLE_STUDENT')")
-    public ResponseEntity<?> bookRide(@PathVariable String rideId, Authentication authentication) {
+    public ResponseEntity<?> bookRide(@PathVariable String rideId, Authentication authentication,
+                                      @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
         logger.debug("Booking ride {} for student {}", rideId, authentication.getName());
+        return idempotencyStore.execute(authentication.getName(), idempotencyKey, "POST /api/rides/" + rideId + "/book",
+                () -> book(rideId, authentication));
+    }
+
+    private ResponseEntity<?> book(String rideId, Authentication authentication) {
         try {
             Ride updatedRide = rideService.bookRide(rideId, authentication.getName());
             // Fetch user details
@@ -126,6 +166,80 @@ public class RideController {
         }
     }
 
+    // Hold a seat for a short time before booking it
+    @PostMapping("/{rideId}/hold")
+    @PreAuthorize("hasAuthority('ROLE_STUDENT')")
+    public ResponseEntity<SeatHold> holdSeat(@PathVariable String rideId, Authentication authentication) {
+        logger.debug("Holding a seat on ride {} for student {}", rideId, authentication.getName());
+        return ResponseEntity.ok(rideService.holdSeat(rideId, authentication.getName()));
+    }
+
+    // Book seats for the student and the students they are travelling with, all or nothing
+    @PostMapping("/{rideId}/book-group")
+    @PreAuthorize("hasAuthority('ROLE_STUDENT')")
+    public ResponseEntity<?> bookGroup(@PathVariable String rideId, @Valid @RequestBody GroupBookingRequest request,
+                                       Authentication authentication) {
+        logger.debug("Group booking ride {} requested by {}", rideId, authentication.getName());
+        Ride updatedRide = rideService.bookGroup(rideId, authentication.getName(), request.getUsernames());
+        return ResponseEntity.ok(Map.of(
+            "message", "Ride booked successfully",
+            "ride", updatedRide,
+            "availableSeats", updatedRide.getAvailableSeats(),
+            "status", updatedRide.getStatus(),
+            "passengers", updatedRide.getPassengers()
+        ));
+    }
+
+    // Book the seat held by the student
+    @PostMapping("/{rideId}/hold/confirm")
+    @PreAuthorize("hasAuthority('ROLE_STUDENT')")
+    public ResponseEntity<?> confirmHold(@PathVariable String rideId, Authentication authentication) {
+        logger.debug("Confirming seat hold on ride {} for student {}", rideId, authentication.getName());
+        Ride updatedRide = rideService.confirmHold(rideId, authentication.getName());
+        return ResponseEntity.ok(Map.of(
+            "message", "Ride booked successfully",
+            "ride", updatedRide,
+            "availableSeats", updatedRide.getAvailableSeats(),
+            "status", updatedRide.getStatus(),
+            "passengers", updatedRide.getPassengers()
+        ));
+    }
+
+    // Give up a seat hold
+    @DeleteMapping("/{rideId}/hold")
+    @PreAuthorize("hasAuthority('ROLE_STUDENT')")
+    public ResponseEntity<?> releaseHold(@PathVariable String rideId, Authentication authentication) {
+        rideService.releaseHold(rideId, authentication.getName());
+        return ResponseEntity.ok(Map.of("message", "Seat hold released", "rideId", rideId));
+    }
+
+    // Join the waitlist of a full ride; the student is booked automatically when a seat frees up
+    @PostMapping("/{rideId}/waitlist")
+    @PreAuthorize("hasAuthority('ROLE_STUDENT')")
+    public ResponseEntity<?> joinWaitlist(@PathVariable String rideId, Authentication authentication) {
+        int position = rideService.joinWaitlist(rideId, authentication.getName());
+        if (position == 0) {
+            return ResponseEntity.ok(Map.of("message", "A seat was free and the ride is booked", "rideId", rideId, "position", 0));
+        }
+        return ResponseEntity.ok(Map.of("message", "Joined the waitlist", "rideId", rideId, "position", position));
+    }
+
+    // Position on the waitlist (0 once booked)
+    @GetMapping("/{rideId}/waitlist")
+    @PreAuthorize("hasAuthority('ROLE_STUDENT')")
+    public ResponseEntity<?> getWaitlistPosition(@PathVariable String rideId, Authentication authentication) {
+        int position = rideService.getWaitlistPosition(rideId, authentication.getName());
+        return ResponseEntity.ok(Map.of("rideId", rideId, "position", position));
+    }
+
+    // Leave the waitlist
+    @DeleteMapping("/{rideId}/waitlist")
+    @PreAuthorize("hasAuthority('ROLE_STUDENT')")
+    public ResponseEntity<?> leaveWaitlist(@PathVariable String rideId, Authentication authentication) {
+        rideService.leaveWaitlist(rideId, authentication.getName());
+        return ResponseEntity.ok(Map.of("message", "Left the waitlist", "rideId", rideId));
+    }
+
     // Driver cancels their own ride
     @PostMapping("/{rideId}/cancel")
     @PreAuthorize("hasAuthority('ROLE_DRIVER')")
@@ -143,14 +257,17 @@ public class RideController {
     // Passenger unbooks (removes themselves) from a ride
     @PostMapping("/{rideId}/unbook")
     @PreAuthorize("hasAuthority('ROLE_STUDENT')")
-    public ResponseEntity<?> unbookRide(@PathVariable String rideId, Authentication authentication) {
+    public ResponseEntity<?> unbookRide(@PathVariable String rideId, Authentication authentication,
+                                        @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
         String username = authentication.getName();
-        try {
-            rideService.cancelBooking(rideId, username);
-            return ResponseEntity.ok(Map.of("message", "Unbooked from ride", "rideId", rideId));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
-        }
+        return idempotencyStore.execute(username, idempotencyKey, "POST /api/rides/" + rideId + "/unbook", () -> {
+            try {
+                rideService.cancelBooking(rideId, username);
+                return ResponseEntity.ok(Map.of("message", "Unbooked from ride", "rideId", rideId));
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+        });
     }
 
     // Driver removes a specific passenger from their ride
@@ -178,7 +295,7 @@ public class RideController {
     // Search rides with date filtering
     @GetMapping("/search")
     @PreAuthorize("hasAnyAuthority('ROLE_STUDENT', 'ROLE_DRIVER')")
-    public ResponseEntity<PagedResponse<Ride>> searchRides(
+    public ResponseEntity<PagedResponse<RideSummary>> searchRides(
             @RequestParam(required = false) String origin,
             @RequestParam(required = false) String destination,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime fromDepartureTime,
@@ -191,7 +308,10 @@ public class RideController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "departureTime") String sortBy,
-            @RequestParam(defaultValue = "ASC") String sortDir
+            @RequestParam(defaultValue = "ASC") String sortDir,
+            @RequestParam(defaultValue = "false") boolean cursor,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Boolean withTotal
     ) {
         logger.debug("Search request with date filtering - from: {}, to: {}, includePastRides: {}", 
                     fromDepartureTime, toDepartureTime, includePastRides);
@@ -204,8 +324,28 @@ public class RideController {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and 50");
         }
 
+        // Keyset pagination: continue after the cursor of the previous page, total only on request
+        if (cursor || after != null) {
+            return ResponseEntity.ok(rideService.searchRidesAfter(
+                    origin,
+                    destination,
+                    fromDepartureTime,
+                    toDepartureTime,
+                    maxPrice,
+                    minSeats,
+                    includeFullRides,
+                    statuses,
+                    includePastRides,
+                    after,
+                    size,
+                    sortBy,
+                    sortDir,
+                    Boolean.TRUE.equals(withTotal)
+            ));
+        }
+
         // Get paginated and filtered results
-        Page<Ride> ridePage = rideService.searchRides(
+        Slice<RideSummary> ridePage = rideService.searchRides(
                 origin,
                 destination,
                 fromDepartureTime,
@@ -218,31 +358,149 @@ public class RideController {
                 page,
                 size,
                 sortBy,
-                sortDir
+                sortDir,
+                withTotal == null || withTotal
         );
 
-        // Convert to PagedResponse
-        PagedResponse<Ride> response = new PagedResponse<>(
-                ridePage.getContent(),
-                ridePage.getNumber(),
-                ridePage.getSize(),
-                ridePage.getTotalElements(),
-                ridePage.getTotalPages(),
-                ridePage.isLast()
-        );
+        return ResponseEntity.ok(toPagedResponse(ridePage));
+    }
 
-        return ResponseEntity.ok(response);
+    // Export every ride matching the search filters as newline-delimited JSON, streamed from a Mongo cursor
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    @PreAuthorize("hasAnyAuthority('ROLE_STUDENT', 'ROLE_DRIVER')")
+    public ResponseEntity<ResponseBodyEmitter> exportRides(
+            @RequestParam(required = false) String origin,
+            @RequestParam(required = false) String destination,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime fromDepartureTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime toDepartureTime,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Integer minSeats,
+            @RequestParam(required = false, defaultValue = "false") Boolean includeFullRides,
+            @RequestParam(required = false) List<RideStatus> statuses,
+            @RequestParam(required = false, defaultValue = "false") boolean includePastRides
+    ) {
+        logger.debug("Export request - origin: {}, destination: {}, from: {}, to: {}", origin, destination,
+                fromDepartureTime, toDepartureTime);
+
+        ObjectWriter writer = objectMapper.writerFor(RideSummary.class);
+        // The emitter carries the export's own timeout; lines are sent in chunks, and a slow client blocks the send and with it the cursor
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(exportTimeoutMillis);
+        emitter.onTimeout(() -> logger.warn("Ride export timed out after {} ms", exportTimeoutMillis));
+        exportExecutor.execute(() -> {
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream(EXPORT_CHUNK_BYTES);
+            try {
+                long count = rideService.streamRides(origin, destination, fromDepartureTime, toDepartureTime, maxPrice,
+                        minSeats, includeFullRides, statuses, includePastRides, ride -> {
+                            try {
+                                chunk.write(writer.writeValueAsBytes(ride));
+                                chunk.write('\n');
+                                if (chunk.size() >= EXPORT_CHUNK_BYTES) {
+                                    emitter.send(chunk.toByteArray(), NDJSON);
+                                    chunk.reset();
+                                }
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                if (chunk.size() > 0) {
+                    emitter.send(chunk.toByteArray(), NDJSON);
+                }
+                emitter.complete();
+                logger.debug("Exported {} rides", count);
+            } catch (IOException | UncheckedIOException | IllegalStateException e) {
+                // The client went away or the export timed out; the container completes the request
+                logger.debug("Ride export stopped: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(NDJSON).body(emitter);
+    }
+
+    // Find rides leaving (or arriving) near a point, nearest first
+    @GetMapping("/nearby")
+    @PreAuthorize("hasAnyAuthority('ROLE_STUDENT', 'ROLE_DRIVER')")
+    public ResponseEntity<List<NearbyRideDTO>> getNearbyRides(
+            @RequestParam double lat,
+            @RequestParam double lng,
+            @RequestParam(defaultValue = "2000") double radiusMeters,
+            @RequestParam(defaultValue = "pickup") String near,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime fromDepartureTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime toDepartureTime,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Integer minSeats,
+            @RequestParam(required = false, defaultValue = "false") Boolean includeFullRides,
+            @RequestParam(required = false) List<RideStatus> statuses,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        logger.debug("Nearby search around ({}, {}) within {} m by {}", lat, lng, radiusMeters, near);
+
+        if (lat < -90 || lat > 90 || lng < -180 || lng > 180) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid coordinates");
+        }
+        if (radiusMeters <= 0 || radiusMeters > 50000) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Radius must be between 1 and 50000 meters");
+        }
+        if (!near.equals("pickup") && !near.equals("dropoff")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "near must be 'pickup' or 'dropoff'");
+        }
+        if (size < 1 || size > 50) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and 50");
+        }
+
+        return ResponseEntity.ok(rideService.findNearbyRides(
+                lat,
+                lng,
+                radiusMeters,
+                near.equals("dropoff"),
+                fromDepartureTime,
+                toDepartureTime,
+                maxPrice,
+                minSeats,
+                includeFullRides,
+                statuses,
+                size
+        ));
+    }
+
+    // Find rides whose route passes near both the pickup and the drop-off point, in that order
+    @GetMapping("/route-match")
+    @PreAuthorize("hasAnyAuthority('ROLE_STUDENT', 'ROLE_DRIVER')")
+    public ResponseEntity<List<RouteMatchDTO>> matchRidesAlongRoute(
+            @RequestParam double pickupLat,
+            @RequestParam double pickupLng,
+            @RequestParam double dropoffLat,
+            @RequestParam double dropoffLng,
+            @RequestParam(defaultValue = "500") double maxDistanceMeters,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        logger.debug("Route match from ({}, {}) to ({}, {}) within {} m", pickupLat, pickupLng, dropoffLat, dropoffLng, maxDistanceMeters);
+
+        if (pickupLat < -90 || pickupLat > 90 || dropoffLat < -90 || dropoffLat > 90
+                || pickupLng < -180 || pickupLng > 180 || dropoffLng < -180 || dropoffLng > 180) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid coordinates");
+        }
+        if (maxDistanceMeters <= 0 || maxDistanceMeters > 2000) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Max distance must be between 1 and 2000 meters");
+        }
+        if (size < 1 || size > 50) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and 50");
+        }
+
+        return ResponseEntity.ok(rideService.findRidesAlongRoute(
+                pickupLat, pickupLng, dropoffLat, dropoffLng, maxDistanceMeters, size));
     }
 
     // Get user's rides (as driver or passenger)
     @GetMapping("/my-rides")
     @PreAuthorize("hasAnyAuthority('ROLE_DRIVER', 'ROLE_STUDENT')")
-    public ResponseEntity<PagedResponse<Ride>> getMyRides(
+    public ResponseEntity<PagedResponse<RideSummary>> getMyRides(
             Authentication authentication,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "5") int size,
             @RequestParam(defaultValue = "departureTime") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortDir) {
+            @RequestParam(defaultValue = "desc") String sortDir,
+            @RequestParam(defaultValue = "true") boolean withTotal) {
         
         logger.debug("Fetching rides for user {}", authentication.getName());
         
@@ -263,73 +521,72 @@ public class RideController {
             Sort.by(Sort.Direction.fromString(sortDir), sortBy));
 
         // Get paginated rides
-        Page<Ride> ridePage = rideService.getUserRides(
+        Slice<RideSummary> ridePage = rideService.getUserRides(
             authentication.getName(),
             isDriver,
-            pageable
+            pageable,
+            withTotal
         );
 
-        // Convert to PagedResponse
-        PagedResponse<Ride> response = new PagedResponse<>(
-            ridePage.getContent(),
-            ridePage.getNumber(),
-            ridePage.getSize(),
-            ridePage.getTotalElements(),
-            ridePage.getTotalPages(),
-            ridePage.isLast()
-        );
-
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(toPagedResponse(ridePage));
     }
 
     // Get passenger booking history (all rides booked by the user)
     @GetMapping("/my-bookings")
     @PreAuthorize("hasAuthority('ROLE_STUDENT')")
-    public ResponseEntity<PagedResponse<Ride>> getMyBookings(
+    public ResponseEntity<PagedResponse<RideSummary>> getMyBookings(
             Authentication authentication,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "5") int size,
             @RequestParam(defaultValue = "departureTime") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir,
-            @RequestParam(required = false) List<RideStatus> statuses) {
+            @RequestParam(required = false) List<RideStatus> statuses,
+            @RequestParam(defaultValue = "true") boolean withTotal) {
         logger.debug("Fetching booking history for passenger {}", authentication.getName());
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.fromString(sortDir), sortBy));
-        Page<Ride> ridePage = rideService.getUserRidesWithStatus(authentication.getName(), false, statuses, pageable);
-        PagedResponse<Ride> response = new PagedResponse<>(
-            ridePage.getContent(),
-            ridePage.getNumber(),
-            ridePage.getSize(),
-            ridePage.getTotalElements(),
-            ridePage.getTotalPages(),
-            ridePage.isLast()
-        );
-        return ResponseEntity.ok(response);
+        Slice<RideSummary> ridePage = rideService.getUserRidesWithStatus(authentication.getName(), false, statuses, pageable, withTotal);
+        return ResponseEntity.ok(toPagedResponse(ridePage));
     }
 
     // Get driver ride history (completed rides hosted by the driver)
     @GetMapping("/my-driven-rides")
     @PreAuthorize("hasAuthority('ROLE_DRIVER')")
-    public ResponseEntity<PagedResponse<Ride>> getMyDrivenRides(
+    public ResponseEntity<PagedResponse<RideSummary>> getMyDrivenRides(
             Authentication authentication,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "5") int size,
             @RequestParam(defaultValue = "departureTime") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir,
-            @RequestParam(required = false) List<RideStatus> statuses) {
+            @RequestParam(required = false) List<RideStatus> statuses,
+            @RequestParam(defaultValue = "true") boolean withTotal) {
         logger.debug("Fetching completed rides for driver {}", authentication.getName());
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.fromString(sortDir), sortBy));
         // Default to COMPLETED if no status filter is provided
         List<RideStatus> statusFilter = (statuses == null || statuses.isEmpty()) ? List.of(RideStatus.COMPLETED) : statuses;
-        Page<Ride> ridePage = rideService.getUserRidesWithStatus(authentication.getName(), true, statusFilter, pageable);
-        PagedResponse<Ride> response = new PagedResponse<>(
+        Slice<RideSummary> ridePage = rideService.getUserRidesWithStatus(authentication.getName(), true, statusFilter, pageable, withTotal);
+        return ResponseEntity.ok(toPagedResponse(ridePage));
+    }
+
+    // Convert a page (with totals) or a slice (without) to PagedResponse; unknown totals are -1
+    private <T> PagedResponse<T> toPagedResponse(Slice<T> ridePage) {
+        if (ridePage instanceof Page<T> page) {
+            return new PagedResponse<>(
+                page.getContent(),
+                page.getNumber(),
+                page.getSize(),
+                page.getTotalElements(),
+                page.getTotalPages(),
+                page.isLast()
+            );
+        }
+        return new PagedResponse<>(
             ridePage.getContent(),
             ridePage.getNumber(),
             ridePage.getSize(),
-            ridePage.getTotalElements(),
-            ridePage.getTotalPages(),
+            -1,
+            -1,
             ridePage.isLast()
         );
-        return ResponseEntity.ok(response);
     }
 
     // List all possible ride statuses
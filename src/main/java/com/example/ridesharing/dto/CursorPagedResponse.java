@@ -0,0 +1,22 @@
+package com.example.ridesharing.dto;
+
+import java.util.List;
+
+/**
+ * Page of results for keyset (cursor) pagination.
+ * totalElements and totalPages are -1 when the total was not counted.
+ */
+public class CursorPagedResponse<T> extends PagedResponse<T> {
+    private String nextCursor;
+
+    public CursorPagedResponse(List<T> content, int size, long totalElements, String nextCursor) {
+        super(content, 0, size, totalElements,
+                totalElements < 0 ? -1 : (int) Math.ceil((double) totalElements / size),
+                nextCursor == null);
+        this.nextCursor = nextCursor;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.ridesharing.dto;
+
+import lombok.Data;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+@Data
+public class GroupBookingRequest {
+    @NotEmpty(message = "At least one username is required")
+    private List<String> usernames;
+}
@@ -0,0 +1,22 @@
+package com.example.ridesharing.dto;
+
+/**
+ * A ride returned by proximity search, with its distance from the search point in metres
+ */
+public class NearbyRideDTO {
+    private RideSummary ride;
+    private double distanceMeters;
+
+    public NearbyRideDTO(RideSummary ride, double distanceMeters) {
+        this.ride = ride;
+        this.distanceMeters = distanceMeters;
+    }
+
+    public RideSummary getRide() {
+        return ride;
+    }
+
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.ridesharing.dto;
+
+import com.example.ridesharing.enums.RideStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Slim read model of a ride for list endpoints.
+ * Filled straight from a field projection on the rides collection; full details
+ * (notes, passengers, vehicle, recurring schedule, ...) come from GET /api/rides/{rideId}.
+ */
+public class RideSummary {
+    /** Ride fields read into a summary, used as the Mongo projection */
+    public static final String[] FIELDS = {
+        "id", "driverUsername", "origin", "destination", "departureTime", "availableSeats",
+        "maxPassengers", "price", "status", "campusLocation", "vehicleType"
+    };
+
+    private String id;
+    private String driverUsername;
+    private String origin;
+    private String destination;
+    private LocalDateTime departureTime;
+    private int availableSeats;
+    private int maxPassengers;
+    private double price;
+    private RideStatus status;
+    private String campusLocation;
+    private String vehicleType;
+
+    public String getId() {
+        return id;
+    }
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getDriverUsername() {
+        return driverUsername;
+    }
+    public void setDriverUsername(String driverUsername) {
+        this.driverUsername = driverUsername;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public LocalDateTime getDepartureTime() {
+        return departureTime;
+    }
+    public void setDepartureTime(LocalDateTime departureTime) {
+        this.departureTime = departureTime;
+    }
+
+    public int getAvailableSeats() {
+        return availableSeats;
+    }
+    public void setAvailableSeats(int availableSeats) {
+        this.availableSeats = availableSeats;
+    }
+
+    public int getMaxPassengers() {
+        return maxPassengers;
+    }
+    public void setMaxPassengers(int maxPassengers) {
+        this.maxPassengers = maxPassengers;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+    public void setPrice(double price) {
+        this.price = price;
+    }
+
+    public RideStatus getStatus() {
+        return status;
+    }
+    public void setStatus(RideStatus status) {
+        this.status = status;
+    }
+
+    public String getCampusLocation() {
+        return campusLocation;
+    }
+    public void setCampusLocation(String campusLocation) {
+        this.campusLocation = campusLocation;
+    }
+
+    public String getVehicleType() {
+        return vehicleType;
+    }
+    public void setVehicleType(String vehicleType) {
+        this.vehicleType = vehicleType;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.ridesharing.dto;
+
+
+/**
+ * A ride whose route passes near both the requested pickup and drop-off points,
+ * with the walking distance in metres to the route at each end
+ */
+public class RouteMatchDTO {
+    private RideSummary ride;
+    private double pickupDistanceMeters;
+    private double dropoffDistanceMeters;
+
+    public RouteMatchDTO(RideSummary ride, double pickupDistanceMeters, double dropoffDistanceMeters) {
+        this.ride = ride;
+        this.pickupDistanceMeters = pickupDistanceMeters;
+        this.dropoffDistanceMeters = dropoffDistanceMeters;
+    }
+
+    public RideSummary getRide() {
+        return ride;
+    }
+
+    public double getPickupDistanceMeters() {
+        return pickupDistanceMeters;
+    }
+
+    public double getDropoffDistanceMeters() {
+        return dropoffDistanceMeters;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.ridesharing.enums;
+
+public enum BookingStatus {
+    CONFIRMED,  // Student holds a seat on the ride
+    CANCELLED,  // Student unbooked
+    REMOVED     // Driver removed the student
+}
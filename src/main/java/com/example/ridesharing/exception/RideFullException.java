@@ -0,0 +1,8 @@
+package com.example.ridesharing.exception;
+
+// A booking was refused because the ride has no seats left
+public class RideFullException extends ConflictException {
+    public RideFullException(String message) {
+        super(message);
+    }
+}
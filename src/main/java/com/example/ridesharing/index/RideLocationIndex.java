@@ -0,0 +1,480 @@
+package com.example.ridesharing.index;
+
+import com.example.ridesharing.model.Ride;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * In-process trigram inverted index over normalized ride origins and destinations.
+ *
+ * Resolves case-insensitive substring filters to candidate ride ids so that search
+ * can query Mongo by _id instead of running an unanchored regex over every ride. The
+ * upcoming-rides search uses it as an in-memory filter instead, with no candidate limit.
+ * Each ride gets an increasing document number; posting lists are kept sorted by
+ * appending, and replaced or removed rides are tombstoned until the next compaction.
+ *
+ * Writes on this node update the index directly. Rides written on other nodes are picked up
+ * by a frequent refresh that indexes rides whose _id is past the high-water mark of the last
+ * load, and by a periodic full rebuild that also catches remote edits and deletions.
+ */
+@Component
+public class RideLocationIndex {
+    private static final Logger logger = LoggerFactory.getLogger(RideLocationIndex.class);
+
+    private static final int GRAM = 3;
+    private static final long DESTINATION_FIELD = 1L << 48;
+    // ObjectIds from different nodes are only ordered to the second, and inserts can commit out of order
+    private static final long REFRESH_OVERLAP_MILLIS = 60_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final int maxCandidates;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> docByRideId = new HashMap<>();
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private String[] rideIds = new String[1024];
+    private String[] origins = new String[1024];
+    private String[] destinations = new String[1024];
+    private int nextDoc = 0;
+    private int liveDocs = 0;
+    private volatile boolean ready = false;
+    private volatile ObjectId highWater;
+
+    public RideLocationIndex(MongoTemplate mongoTemplate,
+                             @Value("${ride.search.location-index.enabled:true}") boolean enabled,
+                             @Value("${ride.search.location-index.max-candidates:5000}") int maxCandidates) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Load every ride's origin and destination from Mongo once the application is up, and
+     * periodically after that. Until the first load completes, searches fall back to the
+     * regex path. A reload drops rides that are no longer in Mongo.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${ride.search.location-index.rebuild-ms:3600000}",
+            initialDelayString = "${ride.search.location-index.rebuild-ms:3600000}")
+    public void rebuild() {
+        if (!enabled) {
+            logger.info("Ride location index is disabled");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Set<String> stale;
+        lock.readLock().lock();
+        try {
+            stale = new HashSet<>(docByRideId.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        Query query = new Query();
+        query.fields().include("origin").include("destination");
+        ObjectId[] newest = new ObjectId[1];
+        try (Stream<Ride> rides = mongoTemplate.stream(query, Ride.class)) {
+            rides.forEach(ride -> {
+                stale.remove(ride.getId());
+                newest[0] = later(newest[0], ride.getId());
+                index(ride);
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Could not build ride location index{}: {}",
+                    ready ? ", keeping the previous one" : ", searches will use regex filters", e.getMessage());
+            return;
+        }
+        // Only rides that were indexed before the reload started and are gone from Mongo now
+        stale.forEach(this::remove);
+        advanceHighWater(newest[0]);
+        ready = true;
+        logger.info("Ride location index built with {} rides in {} ms", size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Index rides created since the last load, including rides created on other nodes.
+     */
+    @Scheduled(fixedDelayString = "${ride.search.location-index.refresh-ms:5000}",
+            initialDelayString = "${ride.search.location-index.refresh-ms:5000}")
+    public void refresh() {
+        ObjectId since = highWater;
+        if (!enabled || !ready || since == null) {
+            return;
+        }
+        Query query = new Query(Criteria.where("id").gt(
+                ObjectId.getSmallestWithDate(new Date(since.getDate().getTime() - REFRESH_OVERLAP_MILLIS))));
+        query.fields().include("origin").include("destination");
+        ObjectId[] newest = new ObjectId[1];
+        try (Stream<Ride> rides = mongoTemplate.stream(query, Ride.class)) {
+            rides.forEach(ride -> {
+                newest[0] = later(newest[0], ride.getId());
+                index(ride);
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Could not refresh ride location index: {}", e.getMessage());
+            return;
+        }
+        advanceHighWater(newest[0]);
+    }
+
+    private static ObjectId later(ObjectId current, String rideId) {
+        if (rideId == null || !ObjectId.isValid(rideId)) {
+            return current;
+        }
+        ObjectId id = new ObjectId(rideId);
+        return current == null || id.compareTo(current) > 0 ? id : current;
+    }
+
+    private synchronized void advanceHighWater(ObjectId newest) {
+        if (newest != null && (highWater == null || newest.compareTo(highWater) > 0)) {
+            highWater = newest;
+        } else if (highWater == null) {
+            // Empty collection: start from now
+            highWater = new ObjectId();
+        }
+    }
+
+    /**
+     * Add or replace the origin/destination entry for a ride.
+     */
+    public void index(Ride ride) {
+        if (!enabled || ride.getId() == null) {
+            return;
+        }
+        String origin = normalize(ride.getOrigin());
+        String destination = normalize(ride.getDestination());
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = docByRideId.get(ride.getId());
+            if (existing != null) {
+                if (origin.equals(origins[existing]) && destination.equals(destinations[existing])) {
+                    return;
+                }
+                tombstone(existing);
+            }
+            int doc = nextDoc++;
+            ensureCapacity(doc);
+            rideIds[doc] = ride.getId();
+            origins[doc] = origin;
+            destinations[doc] = destination;
+            docByRideId.put(ride.getId(), doc);
+            liveDocs++;
+            for (long gram : grams(origin)) {
+                postings.computeIfAbsent(gram, k -> new IntList()).add(doc);
+            }
+            for (long gram : grams(destination)) {
+                postings.computeIfAbsent(gram | DESTINATION_FIELD, k -> new IntList()).add(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop a ride from the index.
+     */
+    public void remove(String rideId) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer doc = docByRideId.remove(rideId);
+            if (doc != null) {
+                tombstone(doc);
+            }
+            if (nextDoc - liveDocs > liveDocs && nextDoc - liveDocs > 10_000) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Resolve origin/destination substring filters to the ids of matching rides.
+     * Blank filters are ignored. Returns null when the index cannot answer (not yet
+     * built, disabled, or more than the configured number of candidates), in which
+     * case the caller should fall back to filtering in Mongo.
+     */
+    public Set<String> findCandidateIds(String origin, String destination) {
+        if (!enabled || !ready) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            int[] docs = matchingDocs(normalize(origin), normalize(destination));
+            if (docs == null) {
+                return null;
+            }
+            if (docs.length > maxCandidates) {
+                logger.debug("Location filter matched {} rides, above limit of {}", docs.length, maxCandidates);
+                return null;
+            }
+            return idsOf(docs);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Test for rides matching the origin/destination substring filters, for callers that narrow
+     * rides down by other filters in memory, so there is no candidate limit. Small candidate sets
+     * are resolved once; above the limit each ride's stored origin and destination are checked.
+     * Returns null when the index is not built or disabled, or when both filters are blank.
+     */
+    public Predicate<String> matcher(String origin, String destination) {
+        if (!enabled || !ready) {
+            return null;
+        }
+        String originQuery = normalize(origin);
+        String destinationQuery = normalize(destination);
+        lock.readLock().lock();
+        try {
+            int[] docs = matchingDocs(originQuery, destinationQuery);
+            if (docs == null) {
+                return null;
+            }
+            if (docs.length <= maxCandidates) {
+                return idsOf(docs)::contains;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return rideId -> {
+            lock.readLock().lock();
+            try {
+                Integer doc = docByRideId.get(rideId);
+                return doc != null && origins[doc].contains(originQuery) && destinations[doc].contains(destinationQuery);
+            } finally {
+                lock.readLock().unlock();
+            }
+        };
+    }
+
+    // Docs matching both normalized filters, or null when both are blank; call under the read lock
+    private int[] matchingDocs(String originQuery, String destinationQuery) {
+        int[] docs = null;
+        int count = 0;
+        if (!originQuery.isEmpty()) {
+            docs = match(originQuery, 0L, origins, null, 0);
+            count = docs.length;
+        }
+        if (!destinationQuery.isEmpty()) {
+            docs = match(destinationQuery, DESTINATION_FIELD, destinations, docs, count);
+        }
+        return docs;
+    }
+
+    private Set<String> idsOf(int[] docs) {
+        Set<String> ids = new LinkedHashSet<>(docs.length * 2);
+        for (int doc : docs) {
+            ids.add(rideIds[doc]);
+        }
+        return ids;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Lower-case, Unicode-normalize and collapse whitespace so that index keys and
+     * query strings compare the same way.
+     */
+    public static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(value, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return normalized.trim().replaceAll("\\s+", " ");
+    }
+
+    // Docs whose value contains the query, optionally restricted to the first withinCount docs of an existing candidate set
+    private int[] match(String query, long field, String[] values, int[] within, int withinCount) {
+        int[] candidates;
+        int count;
+        if (query.length() < GRAM) {
+            // Too short for a trigram lookup: scan stored values in memory
+            candidates = within != null ? within : liveDocs();
+            count = within != null ? withinCount : candidates.length;
+        } else {
+            List<IntList> lists = new ArrayList<>();
+            for (long gram : grams(query)) {
+                IntList list = postings.get(gram | field);
+                if (list == null) {
+                    return new int[0];
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(IntList::size));
+            // Only the starting set is copied; every other posting list is read where it is
+            int start = 0;
+            if (within != null) {
+                candidates = within;
+                count = withinCount;
+            } else {
+                candidates = Arrays.copyOf(lists.get(0).values, lists.get(0).size);
+                count = candidates.length;
+                start = 1;
+            }
+            for (int i = start; i < lists.size() && count > 0; i++) {
+                count = retain(candidates, count, lists.get(i));
+            }
+        }
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            String value = values[candidates[i]];
+            if (value != null && value.contains(query)) {
+                candidates[matched++] = candidates[i];
+            }
+        }
+        return candidates.length == matched ? candidates : Arrays.copyOf(candidates, matched);
+    }
+
+    private int[] liveDocs() {
+        int[] docs = new int[liveDocs];
+        int count = 0;
+        for (int doc = 0; doc < nextDoc && count < docs.length; doc++) {
+            if (rideIds[doc] != null) {
+                docs[count++] = doc;
+            }
+        }
+        return Arrays.copyOf(docs, count);
+    }
+
+    // Keep the first count candidates that are also in the sorted list, compacting them in place; returns the new count
+    private static int retain(int[] candidates, int count, IntList list) {
+        int[] values = list.values;
+        int size = list.size;
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < size; i++) {
+            int doc = candidates[i];
+            while (j < size && values[j] < doc) {
+                j++;
+            }
+            if (j < size && values[j] == doc) {
+                candidates[kept++] = doc;
+                j++;
+            }
+        }
+        return kept;
+    }
+
+    // Pack each distinct run of three chars into the low 48 bits of a long
+    private static Set<Long> grams(String value) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            long gram = ((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2);
+            grams.add(gram);
+        }
+        return grams;
+    }
+
+    private void tombstone(int doc) {
+        rideIds[doc] = null;
+        origins[doc] = null;
+        destinations[doc] = null;
+        liveDocs--;
+    }
+
+    // Renumber live docs densely and rebuild posting lists without tombstones
+    private void compact() {
+        String[] oldIds = rideIds;
+        String[] oldOrigins = origins;
+        String[] oldDestinations = destinations;
+        int oldNext = nextDoc;
+
+        rideIds = new String[Math.max(1024, liveDocs * 2)];
+        origins = new String[rideIds.length];
+        destinations = new String[rideIds.length];
+        docByRideId.clear();
+        postings.clear();
+        nextDoc = 0;
+        liveDocs = 0;
+
+        for (int doc = 0; doc < oldNext; doc++) {
+            if (oldIds[doc] == null) {
+                continue;
+            }
+            int newDoc = nextDoc++;
+            rideIds[newDoc] = oldIds[doc];
+            origins[newDoc] = oldOrigins[doc];
+            destinations[newDoc] = oldDestinations[doc];
+            docByRideId.put(oldIds[doc], newDoc);
+            liveDocs++;
+            for (long gram : grams(oldOrigins[doc])) {
+                postings.computeIfAbsent(gram, k -> new IntList()).add(newDoc);
+            }
+            for (long gram : grams(oldDestinations[doc])) {
+                postings.computeIfAbsent(gram | DESTINATION_FIELD, k -> new IntList()).add(newDoc);
+            }
+        }
+        logger.debug("Compacted ride location index to {} rides", liveDocs);
+    }
+
+    private void ensureCapacity(int doc) {
+        if (doc >= rideIds.length) {
+            int capacity = rideIds.length * 2;
+            rideIds = Arrays.copyOf(rideIds, capacity);
+            origins = Arrays.copyOf(origins, capacity);
+            destinations = Arrays.copyOf(destinations, capacity);
+        }
+    }
+
+    /**
+     * Growable, append-only list of primitive ints.
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.ridesharing.index;
+
+import com.example.ridesharing.enums.RideStatus;
+import com.example.ridesharing.model.Ride;
+import com.example.ridesharing.util.GeoHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory geohash grid from route cells to the scheduled rides whose route crosses them.
+ *
+ * Routes are densified every few metres and each sample's cell is recorded. A corridor
+ * query looks up the cells around the pickup and drop-off points, intersects the ride
+ * sets, then checks the exact point-to-segment distances and that the route reaches the
+ * pickup before the drop-off.
+ *
+ * Writes on this node update the grid directly. A periodic reload picks up routes of rides
+ * written on other nodes and evicts rides that departed or left SCHEDULED; routes that did
+ * not change are not re-gridded.
+ */
+@Component
+public class RouteCorridorIndex {
+    private static final Logger logger = LoggerFactory.getLogger(RouteCorridorIndex.class);
+
+    private static final int PRECISION = 7;          // ~150 m cells
+    private static final double SAMPLE_METERS = 50;  // densify step along each segment
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Set<String>> ridesByCell = new HashMap<>();
+    private final Map<String, Route> routes = new HashMap<>();
+
+    public RouteCorridorIndex(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Load routes of upcoming scheduled rides once the application is up, and reload them
+     * periodically after that, dropping rides that are no longer upcoming and scheduled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${ride.route-index.refresh-ms:30000}",
+            initialDelayString = "${ride.route-index.refresh-ms:30000}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Set<String> stale;
+        lock.readLock().lock();
+        try {
+            stale = new HashSet<>(routes.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        Query query = new Query(Criteria.where("status").is(RideStatus.SCHEDULED)
+                .and("departureTime").gte(LocalDateTime.now())
+                .and("route").exists(true));
+        query.fields().include("route").include("status");
+        try (Stream<Ride> rides = mongoTemplate.stream(query, Ride.class)) {
+            rides.forEach(ride -> {
+                stale.remove(ride.getId());
+                index(ride);
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Could not build route corridor index: {}", e.getMessage());
+            return;
+        }
+        // Departed, cancelled, route-less or deleted since they were indexed
+        stale.forEach(this::remove);
+        logger.debug("Route corridor index built with {} routes in {} ms", size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Add, replace or drop a ride's route. Only scheduled rides with a route are kept.
+     */
+    public void index(Ride ride) {
+        if (ride.getId() == null) {
+            return;
+        }
+        if (ride.getStatus() != RideStatus.SCHEDULED || ride.getRoute() == null
+                || ride.getRoute().getCoordinates().size() < 2) {
+            remove(ride.getId());
+            return;
+        }
+        List<Point> points = ride.getRoute().getCoordinates();
+        lock.readLock().lock();
+        try {
+            Route existing = routes.get(ride.getId());
+            if (existing != null && existing.points.equals(points)) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Route route = new Route(points);
+        lock.writeLock().lock();
+        try {
+            removeLocked(ride.getId());
+            routes.put(ride.getId(), route);
+            for (String cell : route.cells) {
+                ridesByCell.computeIfAbsent(cell, k -> new HashSet<>()).add(ride.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String rideId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(rideId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rides whose route passes within maxDistanceMeters of the pickup and, later along the
+     * route, of the drop-off. Ordered by total walking distance.
+     */
+    public List<RouteMatch> match(double pickupLat, double pickupLng, double dropoffLat, double dropoffLng,
+                                  double maxDistanceMeters) {
+        // Pad by the sample step so a route point in range is never missed between samples
+        double reach = maxDistanceMeters + SAMPLE_METERS;
+        Set<String> pickupCells = GeoHash.cellsWithin(pickupLat, pickupLng, reach, PRECISION);
+        Set<String> dropoffCells = GeoHash.cellsWithin(dropoffLat, dropoffLng, reach, PRECISION);
+
+        List<RouteMatch> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Set<String> candidates = collect(pickupCells);
+            if (candidates.isEmpty()) {
+                return matches;
+            }
+            candidates.retainAll(collect(dropoffCells));
+            for (String rideId : candidates) {
+                Route route = routes.get(rideId);
+                double[] pickup = route.firstWithin(pickupLat, pickupLng, maxDistanceMeters);
+                if (pickup == null) {
+                    continue;
+                }
+                double[] dropoff = route.lastWithin(dropoffLat, dropoffLng, maxDistanceMeters);
+                if (dropoff == null || dropoff[0] <= pickup[0]) {
+                    continue;
+                }
+                matches.add(new RouteMatch(rideId, pickup[1], dropoff[1]));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(Comparator.comparingDouble(m -> m.pickupDistanceMeters() + m.dropoffDistanceMeters()));
+        return matches;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return routes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Set<String> collect(Set<String> cells) {
+        Set<String> rideIds = new HashSet<>();
+        for (String cell : cells) {
+            Set<String> rides = ridesByCell.get(cell);
+            if (rides != null) {
+                rideIds.addAll(rides);
+            }
+        }
+        return rideIds;
+    }
+
+    private void removeLocked(String rideId) {
+        Route route = routes.remove(rideId);
+        if (route == null) {
+            return;
+        }
+        for (String cell : route.cells) {
+            Set<String> rides = ridesByCell.get(cell);
+            if (rides != null) {
+                rides.remove(rideId);
+                if (rides.isEmpty()) {
+                    ridesByCell.remove(cell);
+                }
+            }
+        }
+    }
+
+    public record RouteMatch(String rideId, double pickupDistanceMeters, double dropoffDistanceMeters) {
+    }
+
+    /**
+     * Route polyline as packed lat/lng arrays plus the grid cells it crosses.
+     */
+    private static final class Route {
+        private final List<Point> points;
+        private final double[] lats;
+        private final double[] lngs;
+        private final Set<String> cells = new HashSet<>();
+
+        Route(List<Point> points) {
+            this.points = List.copyOf(points);
+            lats = new double[points.size()];
+            lngs = new double[points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                lngs[i] = points.get(i).getX();
+                lats[i] = points.get(i).getY();
+            }
+            for (int i = 0; i + 1 < lats.length; i++) {
+                double length = GeoHash.distanceMeters(lats[i], lngs[i], lats[i + 1], lngs[i + 1]);
+                int steps = Math.max(1, (int) Math.ceil(length / SAMPLE_METERS));
+                for (int step = 0; step <= steps; step++) {
+                    double t = (double) step / steps;
+                    cells.add(GeoHash.encode(lats[i] + t * (lats[i + 1] - lats[i]),
+                            lngs[i] + t * (lngs[i + 1] - lngs[i]), PRECISION));
+                }
+            }
+        }
+
+        // {progress, distance} of the earliest route position within range of the point, or null
+        double[] firstWithin(double lat, double lng, double maxDistance) {
+            for (int i = 0; i + 1 < lats.length; i++) {
+                double[] closest = closest(i, lat, lng);
+                if (closest[1] <= maxDistance) {
+                    return closest;
+                }
+            }
+            return null;
+        }
+
+        // {progress, distance} of the latest route position within range of the point, or null
+        double[] lastWithin(double lat, double lng, double maxDistance) {
+            for (int i = lats.length - 2; i >= 0; i--) {
+                double[] closest = closest(i, lat, lng);
+                if (closest[1] <= maxDistance) {
+                    return closest;
+                }
+            }
+            return null;
+        }
+
+        // Closest point on segment i to the given point, projected to local metres around it
+        private double[] closest(int i, double lat, double lng) {
+            double scale = Math.cos(Math.toRadians(lat)) * GeoHash.METERS_PER_DEGREE_LAT;
+            double ax = (lngs[i] - lng) * scale;
+            double ay = (lats[i] - lat) * GeoHash.METERS_PER_DEGREE_LAT;
+            double bx = (lngs[i + 1] - lng) * scale;
+            double by = (lats[i + 1] - lat) * GeoHash.METERS_PER_DEGREE_LAT;
+            double dx = bx - ax;
+            double dy = by - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+            double px = ax + t * dx;
+            double py = ay + t * dy;
+            return new double[] { i + t, Math.sqrt(px * px + py * py) };
+        }
+    }
+}
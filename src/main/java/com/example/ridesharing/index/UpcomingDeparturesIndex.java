@@ -0,0 +1,313 @@
+package com.example.ridesharing.index;
+
+import com.example.ridesharing.enums.RideStatus;
+import com.example.ridesharing.model.Ride;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * In-process index of SCHEDULED rides departing within the next few days.
+ *
+ * Rides are grouped into one bucket per departure hour; each bucket packs departure
+ * time, free seats and price into parallel primitive arrays. The index is complete for
+ * every scheduled ride departing before its coverage end, which moves forward with each
+ * periodic rebuild from Mongo. Writes that happen during a rebuild are journaled and
+ * replayed onto the fresh copy before it is swapped in.
+ *
+ * Writes on this node are applied directly; rides created or booked on other nodes show up
+ * with the next rebuild, which runs every few seconds. Callers re-check the rows they return
+ * against Mongo, so the index only decides which rides are looked at.
+ */
+@Component
+public class UpcomingDeparturesIndex {
+    private static final Logger logger = LoggerFactory.getLogger(UpcomingDeparturesIndex.class);
+
+    private static final long SECONDS_PER_HOUR = 3600;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final int horizonDays;
+
+    private final Object lock = new Object();
+    private Buckets buckets = new Buckets();
+    private List<Ride> journal;        // writes seen while a rebuild is loading, null otherwise
+    private long coverageEnd = Long.MIN_VALUE;
+
+    public UpcomingDeparturesIndex(MongoTemplate mongoTemplate,
+                                   @Value("${ride.upcoming-index.enabled:true}") boolean enabled,
+                                   @Value("${ride.upcoming-index.horizon-days:7}") int horizonDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.horizonDays = horizonDays;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    /**
+     * Reload scheduled rides departing within the horizon, moving the coverage window forward.
+     */
+    @Scheduled(initialDelayString = "${ride.upcoming-index.refresh-ms:15000}",
+               fixedDelayString = "${ride.upcoming-index.refresh-ms:15000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime end = now.plusDays(horizonDays);
+        synchronized (lock) {
+            journal = new ArrayList<>();
+        }
+
+        Buckets fresh = new Buckets();
+        long freshCoverageEnd = epoch(end);
+        Query query = new Query(Criteria.where("status").is(RideStatus.SCHEDULED)
+                .and("departureTime").gte(now).lt(end));
+        query.fields().include("departureTime").include("availableSeats").include("price");
+        try (Stream<Ride> rides = mongoTemplate.stream(query, Ride.class)) {
+            rides.forEach(ride -> fresh.put(ride.getId(), epoch(ride.getDepartureTime()), ride.getAvailableSeats(), ride.getPrice()));
+        } catch (RuntimeException e) {
+            logger.warn("Could not rebuild upcoming departures index: {}", e.getMessage());
+            synchronized (lock) {
+                journal = null;
+            }
+            return;
+        }
+
+        synchronized (lock) {
+            for (Ride ride : journal) {
+                apply(fresh, freshCoverageEnd, ride);
+            }
+            journal = null;
+            fresh.pruneBefore(epoch(LocalDateTime.now()));
+            buckets = fresh;
+            coverageEnd = freshCoverageEnd;
+        }
+        logger.debug("Upcoming departures index rebuilt with {} rides in {} ms", size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Reflect a saved ride: keep it while it is SCHEDULED and departs inside the coverage window,
+     * drop it otherwise.
+     */
+    public void index(Ride ride) {
+        if (!enabled || ride.getId() == null) {
+            return;
+        }
+        synchronized (lock) {
+            apply(buckets, coverageEnd, ride);
+            if (journal != null) {
+                journal.add(ride);
+            }
+        }
+    }
+
+    /**
+     * True when every scheduled ride departing before the given time is in the index.
+     */
+    public boolean covers(LocalDateTime end) {
+        synchronized (lock) {
+            return end != null && epoch(end) <= coverageEnd;
+        }
+    }
+
+    public LocalDateTime getCoverageEnd() {
+        synchronized (lock) {
+            return coverageEnd == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(coverageEnd, 0, ZoneOffset.UTC);
+        }
+    }
+
+    /**
+     * Upcoming rides departing in [from, to], ordered by departure time.
+     *
+     * @param rideFilter restrict to rides it accepts, or null for all
+     * @param maxPrice maximum price, or null for any
+     * @param minSeats minimum free seats
+     * @param limit    stop after this many matches
+     */
+    public List<UpcomingRide> find(LocalDateTime from, LocalDateTime to, Predicate<String> rideFilter, Double maxPrice,
+                                   int minSeats, int limit) {
+        long fromEpoch = epoch(from);
+        long toEpoch = to == null ? Long.MAX_VALUE : epoch(to);
+        List<UpcomingRide> rides = new ArrayList<>();
+        synchronized (lock) {
+            long lastHour = Math.floorDiv(Math.min(toEpoch, coverageEnd), SECONDS_PER_HOUR);
+            long firstHour = Math.floorDiv(fromEpoch, SECONDS_PER_HOUR);
+            if (lastHour < firstHour) {
+                return rides;
+            }
+            NavigableMap<Long, Bucket> range = buckets.byHour.subMap(firstHour, true, lastHour, true);
+            for (Bucket bucket : range.values()) {
+                for (int slot : bucket.sortedSlots()) {
+                    long departure = bucket.departures[slot];
+                    if (departure < fromEpoch || departure > toEpoch
+                            || bucket.seats[slot] < minSeats
+                            || (maxPrice != null && bucket.prices[slot] > maxPrice)
+                            || (rideFilter != null && !rideFilter.test(bucket.rideIds[slot]))) {
+                        continue;
+                    }
+                    rides.add(new UpcomingRide(bucket.rideIds[slot],
+                            LocalDateTime.ofEpochSecond(departure, 0, ZoneOffset.UTC), bucket.seats[slot], bucket.prices[slot]));
+                    if (rides.size() >= limit) {
+                        return rides;
+                    }
+                }
+            }
+        }
+        return rides;
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return buckets.bucketOf.size();
+        }
+    }
+
+    private static void apply(Buckets target, long coverageEnd, Ride ride) {
+        long departure = ride.getDepartureTime() == null ? Long.MIN_VALUE : epoch(ride.getDepartureTime());
+        if (ride.getStatus() == RideStatus.SCHEDULED && departure <= coverageEnd
+                && departure >= epoch(LocalDateTime.now())) {
+            target.put(ride.getId(), departure, ride.getAvailableSeats(), ride.getPrice());
+        } else {
+            target.remove(ride.getId());
+        }
+    }
+
+    // Departure times are naive LocalDateTimes; UTC is used only as a fixed offset for ordering
+    private static long epoch(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public record UpcomingRide(String rideId, LocalDateTime departureTime, int availableSeats, double price) {
+    }
+
+    /**
+     * Hour buckets plus the hour each ride currently lives in.
+     */
+    private static final class Buckets {
+        private final TreeMap<Long, Bucket> byHour = new TreeMap<>();
+        private final Map<String, Long> bucketOf = new HashMap<>();
+
+        void put(String rideId, long departure, int seats, double price) {
+            long hour = Math.floorDiv(departure, SECONDS_PER_HOUR);
+            Long current = bucketOf.get(rideId);
+            if (current != null && current != hour) {
+                remove(rideId);
+            }
+            byHour.computeIfAbsent(hour, k -> new Bucket()).put(rideId, departure, seats, price);
+            bucketOf.put(rideId, hour);
+        }
+
+        void remove(String rideId) {
+            Long hour = bucketOf.remove(rideId);
+            if (hour == null) {
+                return;
+            }
+            Bucket bucket = byHour.get(hour);
+            bucket.remove(rideId);
+            if (bucket.size == 0) {
+                byHour.remove(hour);
+            }
+        }
+
+        void pruneBefore(long epoch) {
+            NavigableMap<Long, Bucket> past = byHour.headMap(Math.floorDiv(epoch, SECONDS_PER_HOUR), false);
+            for (Bucket bucket : past.values()) {
+                for (int slot = 0; slot < bucket.size; slot++) {
+                    bucketOf.remove(bucket.rideIds[slot]);
+                }
+            }
+            past.clear();
+        }
+    }
+
+    /**
+     * Rides departing within one hour, stored as parallel arrays. Removal swaps the last slot in.
+     */
+    private static final class Bucket {
+        private String[] rideIds = new String[8];
+        private long[] departures = new long[8];
+        private int[] seats = new int[8];
+        private double[] prices = new double[8];
+        private final Map<String, Integer> slotOf = new HashMap<>();
+        private int size;
+        private int[] sorted;              // cached slot order, dropped whenever the bucket changes
+
+        void put(String rideId, long departure, int seatCount, double price) {
+            Integer slot = slotOf.get(rideId);
+            if (slot == null) {
+                if (size == rideIds.length) {
+                    int capacity = size * 2;
+                    rideIds = Arrays.copyOf(rideIds, capacity);
+                    departures = Arrays.copyOf(departures, capacity);
+                    seats = Arrays.copyOf(seats, capacity);
+                    prices = Arrays.copyOf(prices, capacity);
+                }
+                slot = size++;
+                slotOf.put(rideId, slot);
+                sorted = null;
+                rideIds[slot] = rideId;
+            }
+            if (sorted != null && departures[slot] != departure) {
+                sorted = null;
+            }
+            departures[slot] = departure;
+            seats[slot] = seatCount;
+            prices[slot] = price;
+        }
+
+        void remove(String rideId) {
+            Integer slot = slotOf.remove(rideId);
+            if (slot == null) {
+                return;
+            }
+            int last = --size;
+            if (slot != last) {
+                rideIds[slot] = rideIds[last];
+                departures[slot] = departures[last];
+                seats[slot] = seats[last];
+                prices[slot] = prices[last];
+                slotOf.put(rideIds[slot], slot);
+            }
+            rideIds[last] = null;
+            sorted = null;
+        }
+
+        // Slot numbers ordered by departure time, then ride id; sorted once per change, not per query
+        int[] sortedSlots() {
+            if (sorted == null) {
+                sorted = IntStream.range(0, size).boxed()
+                        .sorted((a, b) -> departures[a] != departures[b]
+                                ? Long.compare(departures[a], departures[b])
+                                : rideIds[a].compareTo(rideIds[b]))
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+            }
+            return sorted;
+        }
+    }
+}
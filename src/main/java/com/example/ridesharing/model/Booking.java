@@ -1,10 +1,21 @@
 package com.example.ridesharing.model;
 
+import com.example.ridesharing.enums.BookingStatus;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import jakarta.validation.constraints.NotBlank;
 
+import java.time.LocalDateTime;
+
 @Document(collection = "bookings")
+@CompoundIndexes({
+    // One booking per student and ride; rebooking reuses it
+    @CompoundIndex(name = "rideId_studentId", def = "{'rideId': 1, 'studentId': 1}", unique = true),
+    // My bookings: covers the lookup of a student's ride ids
+    @CompoundIndex(name = "studentId_status_rideId", def = "{'studentId': 1, 'status': 1, 'rideId': 1}")
+})
 public class Booking {
 
     @Id
@@ -16,6 +27,12 @@ public class Booking {
     @NotBlank(message = "Student ID is required")
     private String studentId;   // The student who booked the ride
 
+    private BookingStatus status = BookingStatus.CONFIRMED;
+
+    private LocalDateTime bookedAt;     // When the seat was (last) taken; the ride's creation time for reconciled bookings
+
+    private LocalDateTime cancelledAt;  // When the booking was cancelled or the student removed
+
     // constructors, getters, setters
 
     public Booking() {}
@@ -44,4 +61,28 @@ public class Booking {
     public void setStudentId(String studentId) {
         this.studentId = studentId;
     }
+
+    public BookingStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(BookingStatus status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getBookedAt() {
+        return bookedAt;
+    }
+
+    public void setBookedAt(LocalDateTime bookedAt) {
+        this.bookedAt = bookedAt;
+    }
+
+    public LocalDateTime getCancelledAt() {
+        return cancelledAt;
+    }
+
+    public void setCancelledAt(LocalDateTime cancelledAt) {
+        this.cancelledAt = cancelledAt;
+    }
 }
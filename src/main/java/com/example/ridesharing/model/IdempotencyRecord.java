@@ -0,0 +1,99 @@
+package com.example.ridesharing.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * The outcome of a request sent with an Idempotency-Key, keyed on the user and the key.
+ * While the request runs the record only claims the key; once it succeeds it holds the
+ * response to replay. Mongo's TTL monitor removes records once they expire.
+ */
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+    @Id
+    private String id;
+
+    // Method, path and body digest of the request the key was first used for
+    private String request;
+
+    // Random token of the request currently holding the claim, so only it can complete or release it
+    private String owner;
+
+    private boolean completed;
+
+    private Integer statusCode;
+
+    private String body;
+
+    @Indexed(name = "expiresAt_ttl", expireAfterSeconds = 0)
+    private Date expiresAt;
+
+    public IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String id, String request, String owner, Date expiresAt) {
+        this.id = id;
+        this.request = request;
+        this.owner = owner;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getRequest() {
+        return request;
+    }
+
+    public void setRequest(String request) {
+        this.request = request;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    public Integer getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(Integer statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
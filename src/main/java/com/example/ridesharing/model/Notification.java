@@ -1,10 +1,16 @@
 package com.example.ridesharing.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 
 @Document(collection = "notifications")
+@CompoundIndexes({
+    @CompoundIndex(name = "userId_timestamp", def = "{'userId': 1, 'timestamp': -1}"),
+    @CompoundIndex(name = "userId_read", def = "{'userId': 1, 'read': 1}")
+})
 public class Notification {
     @Id
     private String id;
@@ -21,7 +27,8 @@ public class Notification {
         RIDE_BOOKED,
         RIDE_CANCELLED,
         RIDE_REMINDER,
-        BOOKING_CONFIRMED
+        BOOKING_CONFIRMED,
+        WAITLIST_PROMOTED
     }
 
     // Constructor
@@ -0,0 +1,40 @@
+package com.example.ridesharing.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Number of unread notifications of a user, kept up to date as notifications are stored and
+ * read so the badge does not have to count them.
+ */
+@Document(collection = "notification_counters")
+public class NotificationCounter {
+    @Id
+    private String userId;
+
+    private long unread;
+
+    public NotificationCounter() {
+    }
+
+    public NotificationCounter(String userId, long unread) {
+        this.userId = userId;
+        this.unread = unread;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public long getUnread() {
+        return unread;
+    }
+
+    public void setUnread(long unread) {
+        this.unread = unread;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.ridesharing.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Notifications accepted for delivery but not yet written to the notifications collection.
+ * One entry holds everything a single event produced, so recording it is one write. Entries
+ * are deleted once their notifications are stored, and replayed if they linger.
+ */
+@Document(collection = "notification_outbox")
+public class NotificationOutboxEntry {
+    @Id
+    private String id;
+
+    private List<Notification> notifications;
+
+    @Indexed(name = "createdAt")
+    private Date createdAt;
+
+    public NotificationOutboxEntry() {
+    }
+
+    public NotificationOutboxEntry(String id, List<Notification> notifications, Date createdAt) {
+        this.id = id;
+        this.notifications = notifications;
+        this.createdAt = createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public List<Notification> getNotifications() {
+        return notifications;
+    }
+
+    public void setNotifications(List<Notification> notifications) {
+        this.notifications = notifications;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
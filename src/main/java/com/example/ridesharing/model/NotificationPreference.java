@@ -1,6 +1,7 @@
 package com.example.ridesharing.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "notification_preferences")
@@ -9,6 +10,7 @@ public class NotificationPreference {
     private String id;
 
     @jakarta.validation.constraints.NotBlank(message = "User ID is required")
+    @Indexed(name = "userId", unique = true)
     private String userId;
     private boolean rideStatusEnabled = true;
     private boolean bookingConfirmationEnabled = true;
@@ -12,7 +12,9 @@ import java.time.LocalDateTime;
  */
 @Document(collection = "ratings")
 @CompoundIndexes({
-    @CompoundIndex(name = "rideId_fromUser_toUser", def = "{'rideId': 1, 'fromUserId': 1, 'toUserId': 1}", unique = true)
+    @CompoundIndex(name = "rideId_fromUser_toUser", def = "{'rideId': 1, 'fromUserId': 1, 'toUserId': 1}", unique = true),
+    @CompoundIndex(name = "toUserId", def = "{'toUserId': 1}"),
+    @CompoundIndex(name = "fromUserId", def = "{'fromUserId': 1}")
 })
 public class Rating {
     @Id
@@ -1,17 +1,33 @@
 package com.example.ridesharing.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import com.example.ridesharing.enums.RideStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.validation.constraints.*;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 @Document(collection = "rides")
+@CompoundIndexes({
+    // Search and scheduler: equality on status, sort/range on departureTime, range on seats
+    @CompoundIndex(name = "status_departureTime_availableSeats", def = "{'status': 1, 'departureTime': 1, 'availableSeats': 1}"),
+    // My rides / my driven rides
+    @CompoundIndex(name = "driverUsername_status_departureTime", def = "{'driverUsername': 1, 'status': 1, 'departureTime': -1}")
+})
 public class Ride {
     @Id
     private String id;
@@ -47,9 +63,23 @@ public class Ride {
     private String[] preferredDepartments; // Preferred departments for carpooling
     private String notes;             // Additional notes or requirements
 
+    // Optional coordinates for proximity search
+    @GeoSpatialIndexed(name = "pickupLocation_2dsphere", type = GeoSpatialIndexType.GEO_2DSPHERE)
+    private GeoJsonPoint pickupLocation;
+
+    @GeoSpatialIndexed(name = "dropoffLocation_2dsphere", type = GeoSpatialIndexType.GEO_2DSPHERE)
+    private GeoJsonPoint dropoffLocation;
+
+    private GeoJsonLineString route;  // Optional planned route, used for corridor matching
+
     private int maxPassengers; // Maximum allowed passengers
 
-    private Set<String> passengers = new HashSet<>();  // Store passenger usernames
+    private Set<String> passengers = new HashSet<>();  // Current passenger usernames; booking records live in bookings
+
+    private List<String> waitlist = new ArrayList<>();  // Usernames waiting for a seat, first come first served
+
+    @Version
+    private Long version;             // Optimistic concurrency; bumped by every save and conditional update
 
     // Getters and setters
 
@@ -172,6 +202,27 @@ public class Ride {
         this.notes = notes;
     }
 
+    public GeoJsonPoint getPickupLocation() {
+        return pickupLocation;
+    }
+    public void setPickupLocation(GeoJsonPoint pickupLocation) {
+        this.pickupLocation = pickupLocation;
+    }
+
+    public GeoJsonPoint getDropoffLocation() {
+        return dropoffLocation;
+    }
+    public void setDropoffLocation(GeoJsonPoint dropoffLocation) {
+        this.dropoffLocation = dropoffLocation;
+    }
+
+    public GeoJsonLineString getRoute() {
+        return route;
+    }
+    public void setRoute(GeoJsonLineString route) {
+        this.route = route;
+    }
+
     public int getMaxPassengers() {
         return maxPassengers;
     }
@@ -185,4 +236,19 @@ public class Ride {
     public void setPassengers(Set<String> passengers) {
         this.passengers = passengers;
     }
+
+    @JsonIgnore // waitlisted usernames are not shown to other users
+    public List<String> getWaitlist() {
+        return waitlist;
+    }
+    public void setWaitlist(List<String> waitlist) {
+        this.waitlist = waitlist;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
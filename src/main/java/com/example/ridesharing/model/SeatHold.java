@@ -0,0 +1,68 @@
+package com.example.ridesharing.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * A seat temporarily reserved for a student until they confirm the booking.
+ * Active holds live in memory; this collection is a backup to restore them after a restart,
+ * and Mongo's TTL monitor removes documents once they expire.
+ */
+@Document(collection = "seat_holds")
+public class SeatHold {
+    @Id
+    private String id;
+
+    @Indexed(name = "rideId")
+    private String rideId;
+
+    private String username;
+
+    @Indexed(name = "expiresAt_ttl", expireAfterSeconds = 0)
+    private Date expiresAt;
+
+    public SeatHold() {
+    }
+
+    public SeatHold(String id, String rideId, String username, Date expiresAt) {
+        this.id = id;
+        this.rideId = rideId;
+        this.username = username;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getRideId() {
+        return rideId;
+    }
+
+    public void setRideId(String rideId) {
+        this.rideId = rideId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Data
@@ -16,6 +17,7 @@ public class User {
     private String id;
 
     @jakarta.validation.constraints.NotBlank(message = "Username is required")
+    @Indexed(name = "username", unique = true)
     private String username;
 
     @jakarta.validation.constraints.NotBlank(message = "Password is required")
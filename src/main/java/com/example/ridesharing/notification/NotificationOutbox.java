@@ -0,0 +1,252 @@
+package com.example.ridesharing.notification;
+
+import com.example.ridesharing.model.Notification;
+import com.example.ridesharing.model.NotificationOutboxEntry;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes notifications to Mongo in batches, off the request thread.
+ *
+ * publish records everything one event produced as a single outbox document (when durable)
+ * and queues it in memory; a background thread gathers queued notifications for a few
+ * milliseconds, stores them with one unordered bulk insert, deletes their outbox documents,
+ * then counts as unread and pushes to connected users only the notifications that insert
+ * actually stored. Notification ids are assigned up front, so replaying an outbox document
+ * whose notifications were already stored only hits duplicate keys, which are skipped rather
+ * than counted or pushed a second time. Outbox documents left behind by a crash or a failed
+ * flush are replayed periodically. When the queue is full, the publisher writes its own
+ * notifications, which slows producers down to the pace Mongo can take.
+ */
+@Component
+public class NotificationOutbox {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationOutbox.class);
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final NotificationPushRegistry pushRegistry;
+    private final UnreadCounters unreadCounters;
+    private final boolean durable;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long offerTimeoutMillis;
+    private final long replayAfterMillis;
+    private final BlockingQueue<Pending> queue;
+    private final Timer flushTimer;
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    public NotificationOutbox(MongoTemplate mongoTemplate, MeterRegistry meterRegistry, NotificationPushRegistry pushRegistry,
+                              UnreadCounters unreadCounters,
+                              @Value("${notification.outbox.durable:true}") boolean durable,
+                              @Value("${notification.outbox.queue-capacity:10000}") int queueCapacity,
+                              @Value("${notification.outbox.batch-size:500}") int batchSize,
+                              @Value("${notification.outbox.linger-ms:5}") long lingerMillis,
+                              @Value("${notification.outbox.offer-timeout-ms:100}") long offerTimeoutMillis,
+                              @Value("${notification.outbox.replay-after-seconds:60}") long replayAfterSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.meterRegistry = meterRegistry;
+        this.pushRegistry = pushRegistry;
+        this.unreadCounters = unreadCounters;
+        this.durable = durable;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.replayAfterMillis = replayAfterSeconds * 1000;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        meterRegistry.gauge("notifications.outbox.queue.depth", queue, Collection::size);
+        this.flushTimer = meterRegistry.timer("notifications.outbox.flush");
+        this.drainer = new Thread(this::run, "notification-outbox");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * Accept the notifications produced by one event for delivery.
+     */
+    public void publish(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        for (Notification notification : notifications) {
+            if (notification.getId() == null) {
+                notification.setId(new ObjectId().toHexString());
+            }
+        }
+        String entryId = null;
+        if (durable) {
+            entryId = new ObjectId().toHexString();
+            mongoTemplate.insert(new NotificationOutboxEntry(entryId, notifications, new Date()));
+        }
+        Pending pending = new Pending(entryId, notifications);
+        try {
+            if (queue.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        count("overflow", notifications.size());
+        flush(List.of(pending));
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                // Linger briefly so notifications from concurrent events share one insert
+                List<Pending> batch = new ArrayList<>();
+                batch.add(first);
+                int size = first.notifications().size();
+                long deadline = System.nanoTime() + lingerNanos;
+                while (size < batchSize) {
+                    Pending next = running
+                            ? queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    size += next.notifications().size();
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Shutting down: keep draining what is queued
+            }
+        }
+    }
+
+    // Store the batch's notifications and drop their outbox documents, then count and push them; returns whether it worked
+    private boolean flush(List<Pending> batch) {
+        List<Notification> notifications = new ArrayList<>();
+        batch.forEach(pending -> notifications.addAll(pending.notifications()));
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<Notification> inserted;
+        try {
+            inserted = insertIgnoringDuplicates(notifications);
+            List<String> entryIds = batch.stream().map(Pending::entryId).filter(Objects::nonNull).toList();
+            if (!entryIds.isEmpty()) {
+                mongoTemplate.remove(new Query(Criteria.where("id").in(entryIds)), NotificationOutboxEntry.class);
+            }
+            count("flushed", inserted.size());
+            if (inserted.size() < notifications.size()) {
+                count("duplicate", notifications.size() - inserted.size());
+            }
+        } catch (RuntimeException e) {
+            count("failed", notifications.size());
+            logger.warn("Could not store {} notifications ({}): {}", notifications.size(),
+                    durable ? "kept in the outbox for replay" : "dropped", e.getMessage());
+            return false;
+        } finally {
+            sample.stop(flushTimer);
+        }
+        try {
+            unreadCounters.added(inserted);
+        } catch (RuntimeException e) {
+            // The counter repair job catches up
+            logger.warn("Could not update unread counters: {}", e.getMessage());
+        }
+        pushRegistry.deliver(inserted);
+        return true;
+    }
+
+    // Returns the notifications this insert stored, leaving out those already stored by an earlier flush
+    private List<Notification> insertIgnoringDuplicates(List<Notification> notifications) {
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Notification.class).insert(notifications).execute();
+            return notifications;
+        } catch (BulkOperationException e) {
+            Set<Integer> duplicates = new HashSet<>();
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+                duplicates.add(error.getIndex());
+            }
+            // Unordered: every insert without an error went through
+            List<Notification> inserted = new ArrayList<>();
+            for (int i = 0; i < notifications.size(); i++) {
+                if (!duplicates.contains(i)) {
+                    inserted.add(notifications.get(i));
+                }
+            }
+            return inserted;
+        }
+    }
+
+    /**
+     * Deliver outbox documents that were never flushed, such as those of a node that stopped
+     * with notifications still queued.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${notification.outbox.replay-interval-ms:60000}",
+            initialDelayString = "${notification.outbox.replay-interval-ms:60000}")
+    public void replayStale() {
+        if (!durable) {
+            return;
+        }
+        try {
+            Query query = new Query(Criteria.where("createdAt").lt(new Date(System.currentTimeMillis() - replayAfterMillis)))
+                    .limit(batchSize);
+            List<NotificationOutboxEntry> entries;
+            while (!(entries = mongoTemplate.find(query, NotificationOutboxEntry.class)).isEmpty()) {
+                List<Pending> batch = entries.stream().map(entry -> new Pending(entry.getId(), entry.getNotifications())).toList();
+                if (!flush(batch)) {
+                    return;
+                }
+                count("replayed", batch.stream().mapToInt(pending -> pending.notifications().size()).sum());
+                logger.info("Replayed {} notification outbox entries", entries.size());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not replay the notification outbox: {}", e.getMessage());
+        }
+    }
+
+    private void count(String outcome, int notifications) {
+        meterRegistry.counter("notifications.outbox", "outcome", outcome).increment(notifications);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        drainer.interrupt();
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Pending(String entryId, List<Notification> notifications) {
+    }
+}
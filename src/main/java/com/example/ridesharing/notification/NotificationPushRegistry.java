@@ -0,0 +1,373 @@
+package com.example.ridesharing.notification;
+
+import com.example.ridesharing.model.Notification;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Push connections (server-sent events or WebSocket) of the users connected to this instance.
+ *
+ * An idle connection is a parked async request or an open socket: it holds no thread, only
+ * the socket and an entry here. Notifications are pushed to a user's connections once they are
+ * stored, as "notification" events followed by an "unread-count-delta" event; marking
+ * notifications as read pushes a negative delta.
+ *
+ * Each connection has its own bounded queue of events, drained by a small sender pool one
+ * connection at a time, so the pool's queue never holds more than one task per connection and
+ * deliveries are never refused. A client that falls behind by more than its queue, or whose
+ * send takes longer than the send timeout, is disconnected and resynchronises on reconnect.
+ * Heartbeats run as one pass on their own thread and only ping connections with nothing queued.
+ */
+@Component
+public class NotificationPushRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationPushRegistry.class);
+
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMillis;
+    private final int maxConnectionsPerUser;
+    private final int maxConnections;
+    private final int maxPendingEvents;
+    private final long sendTimeoutMillis;
+    private final ThreadPoolExecutor sender;
+    private final ThreadPoolExecutor heartbeats;
+
+    private final Map<String, List<Connection>> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    public NotificationPushRegistry(MeterRegistry meterRegistry, ObjectMapper objectMapper,
+                                    @Value("${notification.push.timeout-ms:1800000}") long timeoutMillis,
+                                    @Value("${notification.push.max-connections-per-user:5}") int maxConnectionsPerUser,
+                                    @Value("${notification.push.max-connections:15000}") int maxConnections,
+                                    @Value("${notification.push.max-pending-events:100}") int maxPendingEvents,
+                                    @Value("${notification.push.send-timeout-ms:5000}") long sendTimeoutMillis,
+                                    @Value("${notification.push.sender-threads:4}") int senderThreads) {
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = timeoutMillis;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.maxConnections = maxConnections;
+        this.maxPendingEvents = maxPendingEvents;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        // Unbounded, but holds at most one drain task per connection
+        this.sender = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemon("notification-push"));
+        // One heartbeat pass at a time; a pass due while the last one still runs is skipped
+        this.heartbeats = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), daemon("notification-heartbeat"), new ThreadPoolExecutor.DiscardPolicy());
+        meterRegistry.gauge("notifications.push.connections", connectionCount);
+    }
+
+    /**
+     * Open a server-sent event connection for the user, starting with their current unread count.
+     */
+    public SseEmitter connect(String userId, long unreadCount) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        SseConnection connection = new SseConnection(userId, emitter);
+        emitter.onCompletion(() -> remove(connection));
+        emitter.onTimeout(() -> remove(connection));
+        emitter.onError(e -> remove(connection));
+        register(connection, unreadCount);
+        return emitter;
+    }
+
+    /**
+     * Register an open WebSocket session for the user, starting with their current unread count.
+     * Sends are buffered by the session decorator and limited to the send timeout.
+     */
+    public void connect(String userId, WebSocketSession session, long unreadCount) {
+        WebSocketConnection connection = new WebSocketConnection(userId,
+                new ConcurrentWebSocketSessionDecorator(session, (int) sendTimeoutMillis, 512 * 1024));
+        session.getAttributes().put(WebSocketConnection.class.getName(), connection);
+        register(connection, unreadCount);
+    }
+
+    public void disconnect(WebSocketSession session) {
+        Object connection = session.getAttributes().get(WebSocketConnection.class.getName());
+        if (connection instanceof WebSocketConnection webSocketConnection) {
+            remove(webSocketConnection);
+        }
+    }
+
+    /**
+     * Push newly stored notifications to the connections of their users.
+     */
+    public void deliver(List<Notification> notifications) {
+        if (connections.isEmpty()) {
+            return;
+        }
+        Map<String, List<Notification>> byUser = new HashMap<>();
+        for (Notification notification : notifications) {
+            if (connections.containsKey(notification.getUserId())) {
+                byUser.computeIfAbsent(notification.getUserId(), k -> new ArrayList<>()).add(notification);
+            }
+        }
+        byUser.forEach((userId, userNotifications) -> {
+            for (Connection connection : connections.getOrDefault(userId, List.of())) {
+                for (Notification notification : userNotifications) {
+                    enqueue(connection, new PushEvent(notification.getId(), "notification", notification));
+                }
+                enqueue(connection, delta(userNotifications.size()));
+            }
+        });
+    }
+
+    /**
+     * Push a change of the user's unread count, such as after notifications were read.
+     */
+    public void unreadCountChanged(String userId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        connections.getOrDefault(userId, List.of()).forEach(connection -> enqueue(connection, delta(delta)));
+    }
+
+    @Scheduled(fixedRateString = "${notification.push.heartbeat-ms:25000}")
+    public void heartbeat() {
+        heartbeats.execute(() -> connections.values().forEach(userConnections -> userConnections.forEach(connection -> {
+            // A connection with events queued or in flight does not need a ping
+            if (connection.pendingCount.get() == 0 && connection.sendingSince == 0) {
+                send(connection, PushEvent.PING);
+            }
+        })));
+    }
+
+    /**
+     * Disconnect clients whose current send has been blocked for longer than the send timeout.
+     * Closing the connection fails the blocked write and frees the sender thread.
+     */
+    @Scheduled(fixedDelayString = "${notification.push.send-timeout-ms:5000}")
+    public void closeStalled() {
+        long now = System.currentTimeMillis();
+        connections.values().forEach(userConnections -> userConnections.forEach(connection -> {
+            long since = connection.sendingSince;
+            if (since != 0 && now - since > sendTimeoutMillis) {
+                meterRegistry.counter("notifications.push.closed", "reason", "send-timeout").increment();
+                close(connection, new TimeoutException("Push send took longer than " + sendTimeoutMillis + " ms"));
+            }
+        }));
+    }
+
+    private void register(Connection connection, long unreadCount) {
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            meterRegistry.counter("notifications.push.refused").increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many push connections on this instance");
+        }
+        Connection[] evicted = new Connection[1];
+        connections.compute(connection.userId, (k, userConnections) -> {
+            List<Connection> list = userConnections != null ? userConnections : new CopyOnWriteArrayList<>();
+            if (list.size() >= maxConnectionsPerUser) {
+                evicted[0] = list.remove(0);
+            }
+            list.add(connection);
+            return list;
+        });
+        if (evicted[0] != null) {
+            // The evicted connection's slot is taken over by the new one
+            connectionCount.decrementAndGet();
+            evicted[0].close(null);
+        }
+        enqueue(connection, new PushEvent(null, "unread-count", Map.of("count", unreadCount)));
+    }
+
+    private static PushEvent delta(long delta) {
+        return new PushEvent(null, "unread-count-delta", Map.of("delta", delta));
+    }
+
+    // Queue an event on the connection and make sure a drain is scheduled; a client that is too far behind is dropped
+    private void enqueue(Connection connection, PushEvent event) {
+        if (connection.pendingCount.incrementAndGet() > maxPendingEvents) {
+            meterRegistry.counter("notifications.push.closed", "reason", "too-slow").increment();
+            close(connection, new IOException("Push client fell more than " + maxPendingEvents + " events behind"));
+            return;
+        }
+        connection.pending.add(event);
+        if (connection.draining.compareAndSet(false, true)) {
+            sender.execute(() -> drain(connection));
+        }
+    }
+
+    private void drain(Connection connection) {
+        PushEvent event;
+        while ((event = connection.pending.poll()) != null) {
+            connection.pendingCount.decrementAndGet();
+            if (!send(connection, event)) {
+                connection.pending.clear();
+                break;
+            }
+        }
+        connection.draining.set(false);
+        // An event queued after the last poll but before the flag was cleared still needs a drain
+        if (!connection.pending.isEmpty() && connection.draining.compareAndSet(false, true)) {
+            sender.execute(() -> drain(connection));
+        }
+    }
+
+    // Returns whether the event was sent; a connection that fails is closed and dropped
+    private boolean send(Connection connection, PushEvent event) {
+        connection.sendingSince = System.currentTimeMillis();
+        try {
+            connection.write(event);
+            return true;
+        } catch (IOException | IllegalStateException | SessionLimitExceededException e) {
+            close(connection, e);
+            return false;
+        } finally {
+            connection.sendingSince = 0;
+        }
+    }
+
+    private void close(Connection connection, Throwable cause) {
+        remove(connection);
+        connection.close(cause);
+    }
+
+    private void remove(Connection connection) {
+        boolean[] removed = new boolean[1];
+        connections.computeIfPresent(connection.userId, (k, userConnections) -> {
+            removed[0] = userConnections.remove(connection);
+            return userConnections.isEmpty() ? null : userConnections;
+        });
+        if (removed[0]) {
+            connectionCount.decrementAndGet();
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+        sender.shutdownNow();
+        connections.values().forEach(userConnections -> userConnections.forEach(connection -> connection.close(null)));
+    }
+
+    // An event to push; a null name is a heartbeat
+    private record PushEvent(String id, String name, Object data) {
+        static final PushEvent PING = new PushEvent(null, null, null);
+    }
+
+    private abstract static class Connection {
+        final String userId;
+        final Queue<PushEvent> pending = new ConcurrentLinkedQueue<>();
+        final AtomicInteger pendingCount = new AtomicInteger();
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile long sendingSince;        // start of the send in progress, 0 when none
+
+        Connection(String userId) {
+            this.userId = userId;
+        }
+
+        abstract void write(PushEvent event) throws IOException;
+
+        // Close with an error, or normally when cause is null
+        abstract void close(Throwable cause);
+    }
+
+    private static final class SseConnection extends Connection {
+        private final SseEmitter emitter;
+
+        SseConnection(String userId, SseEmitter emitter) {
+            super(userId);
+            this.emitter = emitter;
+        }
+
+        @Override
+        void write(PushEvent event) throws IOException {
+            if (event.name() == null) {
+                emitter.send(SseEmitter.event().comment("ping"));
+                return;
+            }
+            SseEmitter.SseEventBuilder builder = SseEmitter.event().name(event.name()).data(event.data(), MediaType.APPLICATION_JSON);
+            if (event.id() != null) {
+                builder.id(event.id());
+            }
+            emitter.send(builder);
+        }
+
+        @Override
+        void close(Throwable cause) {
+            if (cause == null) {
+                emitter.complete();
+            } else {
+                emitter.completeWithError(cause);
+            }
+        }
+    }
+
+    // WebSocket frames carry the same events as JSON: {"event": ..., "id": ..., "data": ...}
+    private final class WebSocketConnection extends Connection {
+        private final WebSocketSession session;
+
+        WebSocketConnection(String userId, WebSocketSession session) {
+            super(userId);
+            this.session = session;
+        }
+
+        @Override
+        void write(PushEvent event) throws IOException {
+            if (event.name() == null) {
+                session.sendMessage(new PingMessage());
+                return;
+            }
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("event", event.name());
+            if (event.id() != null) {
+                frame.put("id", event.id());
+            }
+            frame.put("data", event.data());
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(frame)));
+        }
+
+        @Override
+        void close(Throwable cause) {
+            try {
+                session.close(cause == null ? CloseStatus.NORMAL : CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                logger.debug("Could not close push WebSocket for {}: {}", userId, e.getMessage());
+            }
+        }
+    }
+}
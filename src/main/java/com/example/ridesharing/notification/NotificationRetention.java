@@ -0,0 +1,169 @@
+package com.example.ridesharing.notification;
+
+import com.example.ridesharing.model.Notification;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.MergeOperation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps the notifications collection down to recent and still relevant notifications.
+ *
+ * Read notifications expire through a partial TTL index once they are older than the read
+ * retention. Unread notifications older than the archive age are moved in batches to the
+ * notifications_archive collection, where they stay readable but no longer weigh on the
+ * user's hot queries or unread count. Setting either age to 0 turns that tier off.
+ */
+@Component
+public class NotificationRetention {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationRetention.class);
+
+    public static final String ARCHIVE_COLLECTION = "notifications_archive";
+    private static final String READ_TTL_INDEX = "read_timestamp_ttl";
+
+    private final MongoTemplate mongoTemplate;
+    private final UnreadCounters unreadCounters;
+    private final NotificationPushRegistry pushRegistry;
+    private final long readTtlDays;
+    private final long archiveAfterDays;
+    private final int archiveBatchSize;
+
+    public NotificationRetention(MongoTemplate mongoTemplate, UnreadCounters unreadCounters, NotificationPushRegistry pushRegistry,
+                                 @Value("${notification.retention.read-ttl-days:30}") long readTtlDays,
+                                 @Value("${notification.retention.archive-after-days:90}") long archiveAfterDays,
+                                 @Value("${notification.retention.archive-batch-size:1000}") int archiveBatchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.unreadCounters = unreadCounters;
+        this.pushRegistry = pushRegistry;
+        this.readTtlDays = readTtlDays;
+        this.archiveAfterDays = archiveAfterDays;
+        this.archiveBatchSize = archiveBatchSize;
+    }
+
+    /**
+     * Create, retune or drop the read-notification TTL index to match the configured retention,
+     * and index the archive for per-user reads.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        try {
+            IndexOperations hot = mongoTemplate.indexOps(Notification.class);
+            Optional<IndexInfo> existing = hot.getIndexInfo().stream()
+                    .filter(index -> READ_TTL_INDEX.equals(index.getName()))
+                    .findFirst();
+            if (readTtlDays <= 0) {
+                if (existing.isPresent()) {
+                    hot.dropIndex(READ_TTL_INDEX);
+                    logger.info("Dropped the read notification TTL index");
+                }
+            } else if (existing.isEmpty()) {
+                hot.ensureIndex(new Index().on("timestamp", Sort.Direction.ASC)
+                        .named(READ_TTL_INDEX)
+                        .expire(Duration.ofDays(readTtlDays))
+                        .partial(PartialIndexFilter.of(Criteria.where("read").is(true))));
+                logger.info("Read notifications now expire after {} days", readTtlDays);
+            } else if (!existing.get().getExpireAfter().equals(Optional.of(Duration.ofDays(readTtlDays)))) {
+                // Changing the expiry of a TTL index does not need a rebuild
+                mongoTemplate.getDb().runCommand(new Document("collMod", mongoTemplate.getCollectionName(Notification.class))
+                        .append("index", new Document("name", READ_TTL_INDEX)
+                                .append("expireAfterSeconds", Duration.ofDays(readTtlDays).toSeconds())));
+                logger.info("Read notifications now expire after {} days", readTtlDays);
+            }
+            mongoTemplate.indexOps(ARCHIVE_COLLECTION).ensureIndex(new Index()
+                    .on("userId", Sort.Direction.ASC).on("timestamp", Sort.Direction.DESC).named("userId_timestamp"));
+        } catch (RuntimeException e) {
+            logger.warn("Could not set up notification retention indexes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Move unread notifications past the archive age to the archive, one batch at a time.
+     */
+    @Scheduled(fixedDelayString = "${notification.retention.archive-interval-ms:3600000}",
+            initialDelayString = "${notification.retention.archive-interval-ms:3600000}")
+    public void archiveOldUnread() {
+        if (archiveAfterDays <= 0) {
+            return;
+        }
+        String collection = mongoTemplate.getCollectionName(Notification.class);
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(archiveAfterDays);
+        long archived = 0;
+        try {
+            List<Document> batch;
+            do {
+                Query query = new Query(Criteria.where("read").is(false).and("timestamp").lt(cutoff)).limit(archiveBatchSize);
+                query.fields().include("userId");
+                batch = mongoTemplate.find(query, Document.class, collection);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                archived += archiveBatch(collection, batch);
+            } while (batch.size() == archiveBatchSize);
+        } catch (RuntimeException e) {
+            logger.warn("Notification archiving failed: {}", e.getMessage());
+        }
+        if (archived > 0) {
+            logger.info("Archived {} unread notifications older than {} days", archived, archiveAfterDays);
+        }
+    }
+
+    // Copy the batch into the archive (keeping copies left by an interrupted run), then drop it from the hot collection
+    private long archiveBatch(String collection, List<Document> batch) {
+        List<Object> ids = batch.stream().map(document -> document.get("_id")).toList();
+        Criteria unreadInBatch = Criteria.where("_id").in(ids).and("read").is(false);
+        mongoTemplate.aggregate(Aggregation.newAggregation(
+                Aggregation.match(unreadInBatch),
+                Aggregation.merge().intoCollection(ARCHIVE_COLLECTION)
+                        .whenMatched(MergeOperation.WhenDocumentsMatch.keepExistingDocument())
+                        .build()), collection, Document.class);
+        // Count only what this run removed: one marked read or taken by another node since the batch was read is skipped
+        Query removedQuery = new Query(unreadInBatch);
+        removedQuery.fields().include("userId");
+        List<Document> removed = mongoTemplate.findAllAndRemove(removedQuery, Document.class, collection);
+        Map<String, Long> byUser = new HashMap<>();
+        for (Document document : removed) {
+            byUser.merge(document.getString("userId"), 1L, Long::sum);
+        }
+        // Archived notifications no longer count as unread
+        byUser.forEach((userId, count) -> {
+            unreadCounters.read(userId, count);
+            pushRegistry.unreadCountChanged(userId, -count);
+        });
+        return removed.size();
+    }
+
+    /**
+     * A page of the user's archived notifications, newest first.
+     */
+    public Page<Notification> getArchived(String userId, Pageable pageable) {
+        Query query = new Query(Criteria.where("userId").is(userId));
+        long total = mongoTemplate.count(query, ARCHIVE_COLLECTION);
+        query.with(pageable).with(Sort.by(Sort.Direction.DESC, "timestamp"));
+        List<Notification> notifications = mongoTemplate.find(query, Notification.class, ARCHIVE_COLLECTION);
+        return new PageImpl<>(notifications, pageable, total);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.ridesharing.notification;
+
+import com.example.ridesharing.service.NotificationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+/**
+ * WebSocket variant of the notification stream. The handshake is authenticated like any other
+ * API request; after that the server only pushes, and messages from the client are ignored.
+ */
+@Component
+public class NotificationWebSocketHandler extends TextWebSocketHandler {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationWebSocketHandler.class);
+
+    private final NotificationService notificationService;
+    private final NotificationPushRegistry pushRegistry;
+
+    public NotificationWebSocketHandler(NotificationService notificationService, NotificationPushRegistry pushRegistry) {
+        this.notificationService = notificationService;
+        this.pushRegistry = pushRegistry;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        if (session.getPrincipal() == null) {
+            session.close(CloseStatus.POLICY_VIOLATION);
+            return;
+        }
+        String userId = session.getPrincipal().getName();
+        try {
+            pushRegistry.connect(userId, session, notificationService.getUnreadCount(userId));
+        } catch (ResponseStatusException e) {
+            logger.debug("Refused push WebSocket for {}: {}", userId, e.getReason());
+            session.close(CloseStatus.SERVICE_OVERLOAD);
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        pushRegistry.disconnect(session);
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        pushRegistry.disconnect(session);
+    }
+}
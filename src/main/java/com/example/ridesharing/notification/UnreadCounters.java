@@ -0,0 +1,195 @@
+package com.example.ridesharing.notification;
+
+import com.example.ridesharing.model.Notification;
+import com.example.ridesharing.model.NotificationCounter;
+import com.example.ridesharing.repository.NotificationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-user unread notification counts, materialized in notification_counters and cached in
+ * memory so the badge is a map lookup.
+ *
+ * A user's counter is created from a real count the first time it is read, and from then on
+ * is incremented as notifications are inserted and decremented as they are read. The cache
+ * applies this instance's changes directly and reloads after a TTL to pick up changes made on
+ * other instances. Anything the increments miss (a change racing the first read, a failed
+ * counter update) is corrected by a background job that compares counters with real counts.
+ */
+@Component
+public class UnreadCounters {
+    private static final Logger logger = LoggerFactory.getLogger(UnreadCounters.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final NotificationRepository notificationRepository;
+    private final MeterRegistry meterRegistry;
+    private final long ttlMillis;
+    private final int repairBatchSize;
+
+    private final Map<String, Entry> cache;
+
+    public UnreadCounters(MongoTemplate mongoTemplate, NotificationRepository notificationRepository, MeterRegistry meterRegistry,
+                          @Value("${notification.counters.cache.max-entries:50000}") int maxEntries,
+                          @Value("${notification.counters.cache.ttl-seconds:30}") long ttlSeconds,
+                          @Value("${notification.counters.repair.batch-size:500}") int repairBatchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.notificationRepository = notificationRepository;
+        this.meterRegistry = meterRegistry;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.repairBatchSize = repairBatchSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * The user's unread notification count.
+     */
+    public long get(String userId) {
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            Entry entry = cache.get(userId);
+            if (entry != null && now - entry.loadedAt <= ttlMillis) {
+                return Math.max(0, entry.unread);
+            }
+        }
+        NotificationCounter counter = mongoTemplate.findById(userId, NotificationCounter.class);
+        long unread;
+        if (counter != null) {
+            unread = counter.getUnread();
+        } else {
+            // First read: start the counter from a real count
+            unread = notificationRepository.countByUserIdAndReadFalse(userId);
+            mongoTemplate.upsert(new Query(Criteria.where("userId").is(userId)), new Update().setOnInsert("unread", unread),
+                    NotificationCounter.class);
+        }
+        synchronized (cache) {
+            cache.put(userId, new Entry(unread, now));
+        }
+        return Math.max(0, unread);
+    }
+
+    /**
+     * Count newly stored notifications as unread. Callers pass only notifications their write
+     * actually inserted, so a replayed write does not count the same notification twice.
+     */
+    public void added(List<Notification> notifications) {
+        Map<String, Long> byUser = new HashMap<>();
+        for (Notification notification : notifications) {
+            if (!notification.isRead()) {
+                byUser.merge(notification.getUserId(), 1L, Long::sum);
+            }
+        }
+        if (byUser.isEmpty()) {
+            return;
+        }
+        // Only existing counters are incremented; a missing one is created from a real count when first read
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, NotificationCounter.class);
+        byUser.forEach((userId, count) ->
+                bulk.updateOne(new Query(Criteria.where("userId").is(userId)), new Update().inc("unread", count)));
+        bulk.execute();
+        byUser.forEach(this::adjustCached);
+    }
+
+    /**
+     * Count notifications of the user as read.
+     */
+    public void read(String userId, long count) {
+        if (count <= 0) {
+            return;
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("userId").is(userId)), new Update().inc("unread", -count),
+                NotificationCounter.class);
+        adjustCached(userId, -count);
+    }
+
+    /**
+     * Compare every counter with the real unread count and correct the ones that drifted.
+     */
+    @Scheduled(fixedDelayString = "${notification.counters.repair-interval-ms:600000}",
+            initialDelayString = "${notification.counters.repair-interval-ms:600000}")
+    public void repair() {
+        try {
+            int repaired = 0;
+            String lastUserId = null;
+            while (true) {
+                Query page = new Query(lastUserId == null ? new Criteria() : Criteria.where("userId").gt(lastUserId))
+                        .with(Sort.by("userId"))
+                        .limit(repairBatchSize);
+                List<NotificationCounter> counters = mongoTemplate.find(page, NotificationCounter.class);
+                if (counters.isEmpty()) {
+                    break;
+                }
+                repaired += repairBatch(counters);
+                lastUserId = counters.get(counters.size() - 1).getUserId();
+            }
+            if (repaired > 0) {
+                meterRegistry.counter("notifications.counters.repaired").increment(repaired);
+                logger.info("Repaired {} unread notification counters", repaired);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Unread counter repair failed: {}", e.getMessage());
+        }
+    }
+
+    private int repairBatch(List<NotificationCounter> counters) {
+        List<String> userIds = counters.stream().map(NotificationCounter::getUserId).toList();
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("userId").in(userIds).and("read").is(false)),
+                Aggregation.group("userId").count().as("unread"));
+        Map<String, Long> actual = new HashMap<>();
+        for (Document result : mongoTemplate.aggregate(aggregation, Notification.class, Document.class)) {
+            actual.put(result.getString("_id"), ((Number) result.get("unread")).longValue());
+        }
+        int repaired = 0;
+        for (NotificationCounter counter : counters) {
+            long unread = actual.getOrDefault(counter.getUserId(), 0L);
+            if (counter.getUnread() == unread) {
+                continue;
+            }
+            // Only if the counter did not move since it was read, so a concurrent change is not overwritten
+            long updated = mongoTemplate.updateFirst(
+                    new Query(Criteria.where("userId").is(counter.getUserId()).and("unread").is(counter.getUnread())),
+                    new Update().set("unread", unread), NotificationCounter.class).getModifiedCount();
+            if (updated > 0) {
+                repaired++;
+                synchronized (cache) {
+                    cache.remove(counter.getUserId());
+                }
+            }
+        }
+        return repaired;
+    }
+
+    private void adjustCached(String userId, long delta) {
+        synchronized (cache) {
+            Entry entry = cache.get(userId);
+            if (entry != null) {
+                cache.put(userId, new Entry(entry.unread + delta, entry.loadedAt));
+            }
+        }
+    }
+
+    private record Entry(long unread, long loadedAt) {
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.ridesharing.repository;
 
+import com.example.ridesharing.enums.BookingStatus;
 import com.example.ridesharing.model.Booking;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
@@ -9,4 +10,6 @@ public interface BookingRepository extends MongoRepository<Booking, String> {
     List<Booking> findByStudentId(String studentId);
     List<Booking> findByRideId(String rideId);
     long countByStudentId(String studentId);
+    long countByStudentIdAndStatus(String studentId, BookingStatus status);
+    long countByStatus(BookingStatus status);
 }
@@ -0,0 +1,9 @@
+package com.example.ridesharing.repository;
+
+import com.example.ridesharing.model.IdempotencyRecord;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IdempotencyRecordRepository extends MongoRepository<IdempotencyRecord, String> {
+}
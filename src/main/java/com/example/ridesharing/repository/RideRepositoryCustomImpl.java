@@ -1,6 +1,7 @@
 package com.example.ridesharing.repository;
 
 import com.example.ridesharing.enums.RideStatus;
+import com.example.ridesharing.index.RideLocationIndex;
 import com.example.ridesharing.model.Ride;
 
 import org.slf4j.Logger;
@@ -14,6 +15,8 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 @Repository
 public class RideRepositoryCustomImpl implements RideRepositoryCustom {
@@ -23,6 +26,9 @@ public class RideRepositoryCustomImpl implements RideRepositoryCustom {
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    @Autowired
+    private RideLocationIndex locationIndex;
+
     @Override
     public List<Ride> searchRides(
             String origin,
@@ -39,16 +45,29 @@ public class RideRepositoryCustomImpl implements RideRepositoryCustom {
         
         Query query = new Query();
         
-        // Origin filter (case-insensitive partial match)
-        if (origin != null && !origin.trim().isEmpty()) {
-            query.addCriteria(Criteria.where("origin").regex(origin, "i"));
-            logger.debug("Added origin filter: {}", origin);
-        }
-        
-        // Destination filter (case-insensitive partial match)
-        if (destination != null && !destination.trim().isEmpty()) {
-            query.addCriteria(Criteria.where("destination").regex(destination, "i"));
-            logger.debug("Added destination filter: {}", destination);
+        boolean hasOrigin = origin != null && !origin.trim().isEmpty();
+        boolean hasDestination = destination != null && !destination.trim().isEmpty();
+
+        // Origin/destination filters (case-insensitive partial match), resolved through the location index when possible
+        Set<String> candidateIds = (hasOrigin || hasDestination)
+                ? locationIndex.findCandidateIds(origin, destination)
+                : null;
+        if (candidateIds != null) {
+            if (candidateIds.isEmpty()) {
+                logger.debug("No rides match origin={}, destination={}", origin, destination);
+                return List.of();
+            }
+            query.addCriteria(Criteria.where("id").in(candidateIds));
+            logger.debug("Added {} candidate ids from location index", candidateIds.size());
+        } else {
+            if (hasOrigin) {
+                query.addCriteria(Criteria.where("origin").regex(Pattern.quote(origin), "i"));
+                logger.debug("Added origin filter: {}", origin);
+            }
+            if (hasDestination) {
+                query.addCriteria(Criteria.where("destination").regex(Pattern.quote(destination), "i"));
+                logger.debug("Added destination filter: {}", destination);
+            }
         }
         
         // Departure time range filter
@@ -0,0 +1,13 @@
+package com.example.ridesharing.repository;
+
+import com.example.ridesharing.model.SeatHold;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface SeatHoldRepository extends MongoRepository<SeatHold, String> {
+    List<SeatHold> findByExpiresAtAfter(Date time);
+}
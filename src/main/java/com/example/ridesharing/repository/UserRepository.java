@@ -1,10 +1,14 @@
 package com.example.ridesharing.repository;
 
+import com.example.ridesharing.model.Role;
 import com.example.ridesharing.model.User;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+
 @Repository
 public interface UserRepository extends MongoRepository<User, String> {
     User findByUsername(String username);
+    long countByUsernameInAndRole(Collection<String> usernames, Role role);
 }
@@ -1,8 +1,11 @@
 package com.example.ridesharing.scheduler;
 
+import com.example.ridesharing.cache.RideSearchCache;
 import com.example.ridesharing.enums.RideStatus;
+import com.example.ridesharing.index.RideLocationIndex;
 import com.example.ridesharing.model.Ride;
 import com.example.ridesharing.repository.RideRepository;
+import com.example.ridesharing.service.BookingService;
 import com.example.ridesharing.service.NotificationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +14,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -22,11 +26,19 @@ public class RideScheduler {
     private final RideRepository rideRepository;
     private final NotificationService notificationService;
     private final MongoTemplate mongoTemplate;
+    private final RideLocationIndex locationIndex;
+    private final RideSearchCache searchCache;
+    private final BookingService bookingService;
 
-    public RideScheduler(RideRepository rideRepository, NotificationService notificationService, MongoTemplate mongoTemplate) {
+    public RideScheduler(RideRepository rideRepository, NotificationService notificationService, MongoTemplate mongoTemplate,
+                         RideLocationIndex locationIndex, RideSearchCache searchCache,
+                         BookingService bookingService) {
         this.rideRepository = rideRepository;
         this.notificationService = notificationService;
         this.mongoTemplate = mongoTemplate;
+        this.locationIndex = locationIndex;
+        this.searchCache = searchCache;
+        this.bookingService = bookingService;
     }
 
     /**
@@ -40,17 +52,15 @@ public class RideScheduler {
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime thirtyMinutesFromNow = now.plusMinutes(30);
         
-        // Find scheduled rides departing in 30 minutes
+        // Find scheduled rides departing in 30 minutes (status_departureTime_availableSeats index).
+        // Not the upcoming departures index: it lags rides created on other nodes, and a missed reminder is not re-sent
         Query query = new Query();
         query.addCriteria(Criteria.where("status").is(RideStatus.SCHEDULED));
         query.addCriteria(Criteria.where("departureTime").gte(now).lt(thirtyMinutesFromNow));
-        
         List<Ride> upcomingRides = mongoTemplate.find(query, Ride.class);
         
-        for (Ride ride : upcomingRides) {
-            logger.debug("Sending departure reminder for ride {}", ride.getId());
-            notificationService.sendDepartureReminder(ride);
-        }
+        // One preference lookup and one notification batch for all the rides
+        notificationService.sendDepartureReminders(upcomingRides);
     }
     
     /**
@@ -71,24 +81,29 @@ public class RideScheduler {
         inProgressQuery.addCriteria(Criteria.where("status").is(RideStatus.IN_PROGRESS));
         inProgressQuery.addCriteria(Criteria.where("departureTime").lt(oneDayAgo));
         
-        List<Ride> expiredInProgressRides = mongoTemplate.find(inProgressQuery, Ride.class);
-        logger.info("Found {} expired IN_PROGRESS rides to mark as COMPLETED", expiredInProgressRides.size());
-        
-        for (Ride ride : expiredInProgressRides) {
-            ride.setStatus(RideStatus.COMPLETED);
-            rideRepository.save(ride);
-            logger.debug("Automatically marked ride {} as COMPLETED", ride.getId());
-        }
+        // Conditional update: a ride whose status changed since the query is left alone, and the version is bumped
+        long completedCount = mongoTemplate.updateMulti(inProgressQuery, Update.update("status", RideStatus.COMPLETED), Ride.class)
+                .getModifiedCount();
+        logger.info("Marked {} expired IN_PROGRESS rides as COMPLETED", completedCount);
         
         // 2. Optional: Remove very old rides for data cleanup (30+ days old)
         // Comment out this section if you want to keep all historical data
         Query oldRidesQuery = new Query();
         oldRidesQuery.addCriteria(Criteria.where("departureTime").lt(thirtyDaysAgo));
         oldRidesQuery.addCriteria(Criteria.where("status").in(RideStatus.COMPLETED, RideStatus.CANCELLED));
+        oldRidesQuery.fields().include("id");
         
-        long deletedCount = mongoTemplate.remove(oldRidesQuery, Ride.class).getDeletedCount();
+        // Fetch the removed ids so the location index can drop them too
+        List<Ride> removedRides = mongoTemplate.findAllAndRemove(oldRidesQuery, Ride.class);
+        removedRides.forEach(ride -> locationIndex.remove(ride.getId()));
+        bookingService.removeForRides(removedRides.stream().map(Ride::getId).toList());
+        long deletedCount = removedRides.size();
         if (deletedCount > 0) {
             logger.info("Removed {} old completed/cancelled rides (>30 days old)", deletedCount);
         }
+
+        if (completedCount > 0 || deletedCount > 0) {
+            searchCache.invalidate();
+        }
     }
 }
@@ -0,0 +1,192 @@
+package com.example.ridesharing.service;
+
+import com.example.ridesharing.enums.BookingStatus;
+import com.example.ridesharing.model.Booking;
+import com.example.ridesharing.model.Ride;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ConvertOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The bookings ledger: one document per student and ride with its status and timestamps.
+ *
+ * Seats are still claimed on the ride document, whose passengers set guards capacity and
+ * duplicates in the same atomic update. Every change to that set is recorded here right after,
+ * and booking history and "my bookings" are read from here. A failed ledger write does not undo
+ * the seat change; a reconciliation at startup and then hourly fills in bookings missing for
+ * current passengers and releases confirmed bookings of students who are no longer passengers.
+ * Bookings created by the reconciliation have no record of when the seat was taken; their
+ * bookedAt is set to the ride's creation time, taken from its ObjectId.
+ */
+@Service
+public class BookingService {
+    private static final Logger logger = LoggerFactory.getLogger(BookingService.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    public BookingService(MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Record that the students now hold seats on the ride.
+     */
+    public void recordBooked(String rideId, Collection<String> studentIds) {
+        if (studentIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Booking.class);
+            for (String studentId : studentIds) {
+                bulk.upsert(bookingQuery(rideId, studentId), new Update()
+                        .set("status", BookingStatus.CONFIRMED)
+                        .set("bookedAt", now)
+                        .unset("cancelledAt"));
+            }
+            bulk.execute();
+        } catch (RuntimeException e) {
+            failed(rideId, e);
+        }
+    }
+
+    /**
+     * Record that the student no longer holds a seat on the ride.
+     */
+    public void recordReleased(String rideId, String studentId, BookingStatus status) {
+        try {
+            mongoTemplate.updateFirst(bookingQuery(rideId, studentId).addCriteria(Criteria.where("status").is(BookingStatus.CONFIRMED)),
+                    new Update().set("status", status).set("cancelledAt", LocalDateTime.now()), Booking.class);
+        } catch (RuntimeException e) {
+            failed(rideId, e);
+        }
+    }
+
+    /**
+     * Drop the bookings of rides that were deleted.
+     */
+    public void removeForRides(Collection<String> rideIds) {
+        if (!rideIds.isEmpty()) {
+            mongoTemplate.remove(new Query(Criteria.where("rideId").in(rideIds)), Booking.class);
+        }
+    }
+
+    /**
+     * Bring the ledger back in line with ride passengers after failed ledger writes: create
+     * bookings missing for current passengers (including rides booked before the ledger
+     * existed), and release confirmed bookings whose student is no longer a passenger.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${ride.booking.reconcile-ms:3600000}",
+            initialDelayString = "${ride.booking.reconcile-ms:3600000}")
+    public void reconcile() {
+        try {
+            Query query = new Query(Criteria.where("passengers.0").exists(true));
+            query.fields().include("passengers");
+            long upserted = 0;
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Booking.class);
+            int pending = 0;
+            try (Stream<Ride> rides = mongoTemplate.stream(query, Ride.class)) {
+                for (Ride ride : (Iterable<Ride>) rides::iterator) {
+                    for (String studentId : ride.getPassengers()) {
+                        bulk.upsert(bookingQuery(ride.getId(), studentId), new Update()
+                                .setOnInsert("status", BookingStatus.CONFIRMED));
+                        if (++pending == 1000) {
+                            upserted += bulk.execute().getUpserts().size();
+                            bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Booking.class);
+                            pending = 0;
+                        }
+                    }
+                }
+            }
+            if (pending > 0) {
+                upserted += bulk.execute().getUpserts().size();
+            }
+            if (upserted > 0) {
+                logger.info("Created {} missing bookings from ride passengers", upserted);
+            }
+            // Backfill bookedAt, including bookings created by earlier reconciliations, from the ride's ObjectId timestamp
+            long backfilled = mongoTemplate.updateMulti(new Query(Criteria.where("bookedAt").exists(false)),
+                    AggregationUpdate.update().set("bookedAt").toValue(ConvertOperators.ToDate.toDate(
+                            ConvertOperators.ToObjectId.toObjectId("$rideId"))),
+                    Booking.class).getModifiedCount();
+            if (backfilled > 0) {
+                logger.info("Backfilled bookedAt on {} bookings from their ride's creation time", backfilled);
+            }
+            long released = releaseDeparted();
+            if (released > 0) {
+                logger.info("Released {} confirmed bookings whose student is no longer a passenger", released);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not reconcile bookings: {}", e.getMessage());
+        }
+    }
+
+    // Mark CONFIRMED bookings as CANCELLED when the student is not among the ride's passengers (or the ride is gone)
+    private long releaseDeparted() {
+        // Raw stages: the status is given as stored, and the join reads each ride's passengers by _id
+        Document passengers = new Document("$ifNull", List.of(new Document("$arrayElemAt", List.of("$ride.passengers", 0)), List.of()));
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("status", BookingStatus.CONFIRMED.name())),
+                new Document("$lookup", new Document("from", mongoTemplate.getCollectionName(Ride.class))
+                        .append("let", new Document("rideId", new Document("$convert", new Document("input", "$rideId")
+                                .append("to", "objectId").append("onError", null))))
+                        .append("pipeline", List.of(
+                                new Document("$match", new Document("$expr", new Document("$eq", List.of("$_id", "$$rideId")))),
+                                new Document("$project", new Document("passengers", 1))))
+                        .append("as", "ride")),
+                new Document("$match", new Document("$expr",
+                        new Document("$not", List.of(new Document("$in", List.of("$studentId", passengers)))))),
+                new Document("$project", new Document("bookedAt", 1)));
+
+        long released = 0;
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Booking.class);
+        int pending = 0;
+        for (Document booking : mongoTemplate.getCollection(mongoTemplate.getCollectionName(Booking.class))
+                .aggregate(pipeline).allowDiskUse(true)) {
+            // Still CONFIRMED with the same bookedAt: a rebooking since the join read the ride is left alone
+            bulk.updateOne(new Query(Criteria.where("_id").is(booking.get("_id"))
+                            .and("status").is(BookingStatus.CONFIRMED)
+                            .and("bookedAt").is(booking.get("bookedAt"))),
+                    new Update().set("status", BookingStatus.CANCELLED).set("cancelledAt", now));
+            if (++pending == 1000) {
+                released += bulk.execute().getModifiedCount();
+                bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Booking.class);
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            released += bulk.execute().getModifiedCount();
+        }
+        return released;
+    }
+
+    private static Query bookingQuery(String rideId, String studentId) {
+        return new Query(Criteria.where("rideId").is(rideId).and("studentId").is(studentId));
+    }
+
+    private void failed(String rideId, RuntimeException e) {
+        meterRegistry.counter("bookings.ledger.failures").increment();
+        logger.error("Could not record booking change for ride {}: {}", rideId, e.getMessage());
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.ridesharing.service;
 
+import com.example.ridesharing.cache.NotificationPreferenceCache;
 import com.example.ridesharing.exception.ResourceNotFoundException;
 import com.example.ridesharing.exception.BadRequestException;
 import com.example.ridesharing.model.NotificationPreference;
@@ -12,9 +13,12 @@ import org.springframework.stereotype.Service;
 public class NotificationPreferenceService {
     private static final Logger logger = LoggerFactory.getLogger(NotificationPreferenceService.class);
     private final NotificationPreferenceRepository preferenceRepository;
+    private final NotificationPreferenceCache preferenceCache;
 
-    public NotificationPreferenceService(NotificationPreferenceRepository preferenceRepository) {
+    public NotificationPreferenceService(NotificationPreferenceRepository preferenceRepository,
+                                         NotificationPreferenceCache preferenceCache) {
         this.preferenceRepository = preferenceRepository;
+        this.preferenceCache = preferenceCache;
     }
 
     public NotificationPreference getPreferences(String userId) {
@@ -37,6 +41,8 @@ public class NotificationPreferenceService {
         existing.setEmailNotificationsEnabled(preferences.isEmailNotificationsEnabled());
         existing.setPushNotificationsEnabled(preferences.isPushNotificationsEnabled());
         existing.setReminderMinutesBefore(preferences.getReminderMinutesBefore());
-        return preferenceRepository.save(existing);
+        NotificationPreference saved = preferenceRepository.save(existing);
+        preferenceCache.invalidate(userId);
+        return saved;
     }
 }
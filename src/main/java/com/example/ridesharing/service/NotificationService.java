@@ -1,37 +1,69 @@
 package com.example.ridesharing.service;
 
+import com.example.ridesharing.cache.NotificationPreferenceCache;
 import com.example.ridesharing.model.Notification;
 import com.example.ridesharing.model.NotificationPreference;
 import com.example.ridesharing.model.Ride;
+import com.example.ridesharing.notification.NotificationOutbox;
+import com.example.ridesharing.notification.NotificationPushRegistry;
+import com.example.ridesharing.notification.NotificationRetention;
+import com.example.ridesharing.notification.UnreadCounters;
 import com.example.ridesharing.repository.NotificationRepository;
-import com.example.ridesharing.repository.NotificationPreferenceRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class NotificationService {
     private static final Logger logger = LoggerFactory.getLogger(NotificationService.class);
     private final NotificationRepository notificationRepository;
-    private final NotificationPreferenceRepository preferenceRepository;
+    private final MongoTemplate mongoTemplate;
+    private final NotificationPreferenceCache preferenceCache;
+    private final NotificationOutbox notificationOutbox;
+    private final NotificationPushRegistry pushRegistry;
+    private final UnreadCounters unreadCounters;
+    private final NotificationRetention notificationRetention;
 
     public NotificationService(NotificationRepository notificationRepository, 
-                             NotificationPreferenceRepository preferenceRepository) {
+                             MongoTemplate mongoTemplate,
+                             NotificationPreferenceCache preferenceCache,
+                             NotificationOutbox notificationOutbox,
+                             NotificationPushRegistry pushRegistry,
+                             UnreadCounters unreadCounters,
+                             NotificationRetention notificationRetention) {
         this.notificationRepository = notificationRepository;
-        this.preferenceRepository = preferenceRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.preferenceCache = preferenceCache;
+        this.notificationOutbox = notificationOutbox;
+        this.pushRegistry = pushRegistry;
+        this.unreadCounters = unreadCounters;
+        this.notificationRetention = notificationRetention;
     }    // Send notification when ride status changes
     public void notifyRideStatusChange(Ride ride) {
         logger.debug("Sending ride status change notifications for ride {}", ride.getId());
+        List<Notification> notifications = new ArrayList<>();
         
-        // Notify all passengers
+        // Notify all passengers, reading their preferences in one go
+        Map<String, NotificationPreference> prefs = preferenceCache.getAll(ride.getPassengers());
         for (String passengerId : ride.getPassengers()) {
-            NotificationPreference prefs = preferenceRepository.findByUserId(passengerId)
-                .orElse(new NotificationPreference(passengerId));
-                
-            if (prefs.isRideStatusEnabled()) {
+            if (prefs.get(passengerId).isRideStatusEnabled()) {
                 createNotification(
+                    notifications,
                     passengerId,
                     "Ride Status Updated",
                     "Your ride from " + ride.getOrigin() + " to " + ride.getDestination() + 
@@ -41,20 +73,21 @@ public class NotificationService {
                 );
             }
         }
+        notificationOutbox.publish(notifications);
     }    // Send notification when ride is booked
     public void notifyRideBooked(Ride ride, String passengerId) {
         logger.debug("Sending ride booked notifications for ride {}", ride.getId());
+        List<Notification> notifications = new ArrayList<>();
         
         // Get preferences for both driver and passenger
-        NotificationPreference driverPrefs = preferenceRepository.findByUserId(ride.getDriverUsername())
-            .orElse(new NotificationPreference(ride.getDriverUsername()));
-            
-        NotificationPreference passengerPrefs = preferenceRepository.findByUserId(passengerId)
-            .orElse(new NotificationPreference(passengerId));
+        Map<String, NotificationPreference> prefs = preferenceCache.getAll(List.of(ride.getDriverUsername(), passengerId));
+        NotificationPreference driverPrefs = prefs.get(ride.getDriverUsername());
+        NotificationPreference passengerPrefs = prefs.get(passengerId);
         
         // Notify driver if they have booking notifications enabled
         if (driverPrefs.isBookingConfirmationEnabled()) {
             createNotification(
+                notifications,
                 ride.getDriverUsername(),
                 "New Booking",
                 "A new passenger has booked your ride to " + ride.getDestination(),
@@ -66,6 +99,7 @@ public class NotificationService {
         // Notify passenger if they have booking notifications enabled
         if (passengerPrefs.isBookingConfirmationEnabled()) {
             createNotification(
+                notifications,
                 passengerId,
                 "Booking Confirmed",
                 "Your booking for the ride to " + ride.getDestination() + " has been confirmed",
@@ -73,13 +107,106 @@ public class NotificationService {
                 ride.getId()
             );
         }
-    }    // Send departure reminder
+        notificationOutbox.publish(notifications);
+    }
+
+    // Send booking notifications for a group booked together, reading all preferences in one query
+    public void notifyGroupBooked(Ride ride, List<String> passengerIds) {
+        logger.debug("Sending group booking notifications for ride {} ({} passengers)", ride.getId(), passengerIds.size());
+
+        List<String> userIds = new ArrayList<>(passengerIds);
+        userIds.add(ride.getDriverUsername());
+        Map<String, NotificationPreference> prefs = preferenceCache.getAll(userIds);
+
+        List<Notification> notifications = new ArrayList<>();
+        NotificationPreference driverPrefs = prefs.get(ride.getDriverUsername());
+        if (driverPrefs.isBookingConfirmationEnabled()) {
+            createNotification(
+                notifications,
+                ride.getDriverUsername(),
+                "New Booking",
+                passengerIds.size() + " new passengers have booked your ride to " + ride.getDestination(),
+                Notification.NotificationType.RIDE_BOOKED,
+                ride.getId()
+            );
+        }
+        for (String passengerId : passengerIds) {
+            NotificationPreference passengerPrefs = prefs.get(passengerId);
+            if (passengerPrefs.isBookingConfirmationEnabled()) {
+                createNotification(
+                    notifications,
+                    passengerId,
+                    "Booking Confirmed",
+                    "Your booking for the ride to " + ride.getDestination() + " has been confirmed",
+                    Notification.NotificationType.BOOKING_CONFIRMED,
+                    ride.getId()
+                );
+            }
+        }
+        notificationOutbox.publish(notifications);
+    }
+
+    // Send notifications when a waitlisted student is given a freed seat
+    public void notifyWaitlistPromoted(Ride ride, String passengerId) {
+        logger.debug("Sending waitlist promotion notifications for ride {}", ride.getId());
+        List<Notification> notifications = new ArrayList<>();
+
+        Map<String, NotificationPreference> prefs = preferenceCache.getAll(List.of(ride.getDriverUsername(), passengerId));
+        NotificationPreference driverPrefs = prefs.get(ride.getDriverUsername());
+        NotificationPreference passengerPrefs = prefs.get(passengerId);
+
+        if (driverPrefs.isBookingConfirmationEnabled()) {
+            createNotification(
+                notifications,
+                ride.getDriverUsername(),
+                "New Booking",
+                "A passenger from the waitlist has been booked on your ride to " + ride.getDestination(),
+                Notification.NotificationType.RIDE_BOOKED,
+                ride.getId()
+            );
+        }
+
+        if (passengerPrefs.isBookingConfirmationEnabled()) {
+            createNotification(
+                notifications,
+                passengerId,
+                "Off the Waitlist",
+                "A seat opened up and you are now booked on the ride to " + ride.getDestination(),
+                Notification.NotificationType.WAITLIST_PROMOTED,
+                ride.getId()
+            );
+        }
+        notificationOutbox.publish(notifications);
+    }
+
+    // Send departure reminder
     public void sendDepartureReminder(Ride ride) {
+        sendDepartureReminders(List.of(ride));
+    }
+
+    // Send departure reminders for several rides, with one preference lookup and one notification batch for all of them
+    public void sendDepartureReminders(Collection<Ride> rides) {
+        if (rides.isEmpty()) {
+            return;
+        }
+        Set<String> userIds = new HashSet<>();
+        for (Ride ride : rides) {
+            userIds.add(ride.getDriverUsername());
+            userIds.addAll(ride.getPassengers());
+        }
+        Map<String, NotificationPreference> prefs = preferenceCache.getAll(userIds);
+        List<Notification> notifications = new ArrayList<>();
+        for (Ride ride : rides) {
+            addDepartureReminders(ride, prefs, notifications);
+        }
+        notificationOutbox.publish(notifications);
+    }
+
+    private void addDepartureReminders(Ride ride, Map<String, NotificationPreference> prefs, List<Notification> notifications) {
         logger.debug("Sending departure reminders for ride {}", ride.getId());
         
         // Get driver preferences
-        NotificationPreference driverPrefs = preferenceRepository.findByUserId(ride.getDriverUsername())
-            .orElse(new NotificationPreference(ride.getDriverUsername()));
+        NotificationPreference driverPrefs = prefs.get(ride.getDriverUsername());
 
         if (driverPrefs.isDepartureReminderEnabled()) {
             String driverMessage = String.format(
@@ -91,6 +218,7 @@ public class NotificationService {
 
             // Notify driver
             createNotification(
+                notifications,
                 ride.getDriverUsername(),
                 "Departure Reminder",
                 driverMessage,
@@ -101,9 +229,7 @@ public class NotificationService {
 
         // Notify all passengers based on their preferences
         for (String passengerId : ride.getPassengers()) {
-            NotificationPreference passengerPrefs = preferenceRepository.findByUserId(passengerId)
-                .orElse(new NotificationPreference(passengerId));
-                
+            NotificationPreference passengerPrefs = prefs.get(passengerId);
             if (passengerPrefs.isDepartureReminderEnabled()) {
                 String passengerMessage = String.format(
                     "Reminder: Your ride from %s to %s departs in %d minutes",
@@ -113,6 +239,7 @@ public class NotificationService {
                 );
                 
                 createNotification(
+                    notifications,
                     passengerId,
                     "Departure Reminder",
                     passengerMessage,
@@ -128,35 +255,72 @@ public class NotificationService {
         return notificationRepository.findByUserIdOrderByTimestampDesc(userId, pageable);
     }
 
-    // Get unread notification count
+    // Get user's archived notifications (unread ones moved out of the hot collection by age)
+    public Page<Notification> getArchivedNotifications(String userId, Pageable pageable) {
+        return notificationRetention.getArchived(userId, pageable);
+    }
+
+    // Get unread notification count, from the user's materialized counter
     public long getUnreadCount(String userId) {
-        return notificationRepository.countByUserIdAndReadFalse(userId);
+        return unreadCounters.get(userId);
     }
 
-    // Mark notification as read
-    public void markAsRead(String notificationId) {
-        notificationRepository.findById(notificationId).ifPresent(notification -> {
-            notification.setRead(true);
-            notificationRepository.save(notification);
-        });
+    // Open a push connection for new notifications and unread count changes
+    public SseEmitter subscribe(String userId) {
+        return pushRegistry.connect(userId, getUnreadCount(userId));
+    }
+
+    // Mark one of the user's notifications as read; a single conditional update, so other users' notifications are untouched
+    // Returns false when the user has no such notification; marking an already read one again still succeeds
+    public boolean markAsRead(String userId, String notificationId) {
+        return markRead(userId, Criteria.where("id").is(notificationId)) > 0
+                || mongoTemplate.exists(new Query(Criteria.where("id").is(notificationId).and("userId").is(userId)), Notification.class);
     }
 
     // Mark all notifications as read
-    public void markAllAsRead(String userId) {
-        notificationRepository.findByUserIdAndReadFalse(userId).forEach(notification -> {
-            notification.setRead(true);
-            notificationRepository.save(notification);
-        });
+    public long markAllAsRead(String userId) {
+        return markRead(userId, new Criteria());
+    }
+
+    // Mark notifications received up to the given time as read
+    public long markReadBefore(String userId, LocalDateTime before) {
+        return markRead(userId, Criteria.where("timestamp").lte(before));
+    }
+
+    // Mark notifications about a ride as read
+    public long markReadForRide(String userId, String rideId) {
+        return markRead(userId, Criteria.where("rideId").is(rideId));
+    }
+
+    // Delete read notifications older than the given number of days
+    public long deleteReadOlderThan(String userId, int days) {
+        Query query = new Query(Criteria.where("userId").is(userId).and("read").is(true)
+                .and("timestamp").lt(LocalDateTime.now().minusDays(days)));
+        long deleted = mongoTemplate.remove(query, Notification.class).getDeletedCount();
+        logger.debug("Deleted {} read notifications of {} older than {} days", deleted, userId, days);
+        return deleted;
+    }
+
+    // One updateMulti over the user's unread notifications matching the filter; returns how many were marked
+    private long markRead(String userId, Criteria filter) {
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("userId").is(userId).and("read").is(false), filter));
+        long updated = mongoTemplate.updateMulti(query, Update.update("read", true), Notification.class).getModifiedCount();
+        if (updated > 0) {
+            unreadCounters.read(userId, updated);
+            pushRegistry.unreadCountChanged(userId, -updated);
+        }
+        return updated;
     }
 
-    // Helper method to create and save a notification
-    private Notification createNotification(
+    // Helper method to create a notification as part of an event's batch
+    private void createNotification(
+            List<Notification> notifications,
             String userId, 
             String title, 
             String message, 
             Notification.NotificationType type,
             String rideId) {
-        Notification notification = new Notification(userId, title, message, type, rideId);
-        return notificationRepository.save(notification);
+        notifications.add(new Notification(userId, title, message, type, rideId));
     }
 }
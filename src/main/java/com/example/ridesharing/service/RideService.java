@@ -1,31 +1,74 @@
 package com.example.ridesharing.service;
 
+import com.example.ridesharing.cache.RideSearchCache;
+import com.example.ridesharing.concurrency.BookingAdmission;
+import com.example.ridesharing.concurrency.RideWriteRetry;
+import com.example.ridesharing.concurrency.SeatReleasedEvent;
+import com.example.ridesharing.concurrency.SeatHolds;
+import com.example.ridesharing.dto.CursorPagedResponse;
+import com.example.ridesharing.dto.NearbyRideDTO;
+import com.example.ridesharing.dto.RideSummary;
+import com.example.ridesharing.dto.RouteMatchDTO;
+import com.example.ridesharing.enums.BookingStatus;
 import com.example.ridesharing.enums.RideStatus;
+import com.example.ridesharing.index.RideLocationIndex;
+import com.example.ridesharing.index.RouteCorridorIndex;
+import com.example.ridesharing.index.UpcomingDeparturesIndex;
+import com.example.ridesharing.model.Booking;
 import com.example.ridesharing.model.Ride;
+import com.example.ridesharing.model.SeatHold;
+import com.example.ridesharing.model.Role;
 import com.example.ridesharing.repository.RideRepository;
+import com.example.ridesharing.repository.UserRepository;
+import com.example.ridesharing.util.SearchCursor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.security.core.Authentication;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import com.example.ridesharing.exception.ResourceNotFoundException;
 import com.example.ridesharing.exception.BadRequestException;
 import com.example.ridesharing.exception.ConflictException;
+import com.example.ridesharing.exception.RideFullException;
 import com.example.ridesharing.exception.UnauthorizedException;
 
 @Service
@@ -33,11 +76,49 @@ public class RideService {    private static final Logger logger = LoggerFactory
     private final RideRepository rideRepository;
     private final MongoTemplate mongoTemplate;
     private final NotificationService notificationService;
+    private final RideLocationIndex locationIndex;
+    private final MeterRegistry meterRegistry;
+    private final RideSearchCache searchCache;
+    private final RouteCorridorIndex corridorIndex;
+    private final UpcomingDeparturesIndex upcomingIndex;
+    private final RideWriteRetry writeRetry;
+    private final BookingAdmission bookingAdmission;
+    private final SeatHolds seatHolds;
+    private final boolean singleRoundTrip;
+    private final int exportBatchSize;
+    private final int maxWaitlistSize;
+    private final UserRepository userRepository;
+    private final BookingService bookingService;
+    private final int maxGroupSize;
 
-    public RideService(RideRepository rideRepository, MongoTemplate mongoTemplate, NotificationService notificationService) {
+    private static final String QUERY_TIMER = "rides.list.query";
+
+    public RideService(RideRepository rideRepository, MongoTemplate mongoTemplate, NotificationService notificationService,
+                       RideLocationIndex locationIndex, MeterRegistry meterRegistry, RideSearchCache searchCache,
+                       RouteCorridorIndex corridorIndex, UpcomingDeparturesIndex upcomingIndex, RideWriteRetry writeRetry,
+                       BookingAdmission bookingAdmission, SeatHolds seatHolds, UserRepository userRepository,
+                       BookingService bookingService,
+                       @Value("${ride.query.single-round-trip:true}") boolean singleRoundTrip,
+                       @Value("${ride.export.batch-size:500}") int exportBatchSize,
+                       @Value("${ride.waitlist.max-size:50}") int maxWaitlistSize,
+                       @Value("${ride.booking.group.max-size:8}") int maxGroupSize) {
         this.rideRepository = rideRepository;
         this.mongoTemplate = mongoTemplate;
         this.notificationService = notificationService;
+        this.locationIndex = locationIndex;
+        this.meterRegistry = meterRegistry;
+        this.searchCache = searchCache;
+        this.corridorIndex = corridorIndex;
+        this.upcomingIndex = upcomingIndex;
+        this.writeRetry = writeRetry;
+        this.bookingAdmission = bookingAdmission;
+        this.seatHolds = seatHolds;
+        this.singleRoundTrip = singleRoundTrip;
+        this.exportBatchSize = exportBatchSize;
+        this.maxWaitlistSize = maxWaitlistSize;
+        this.userRepository = userRepository;
+        this.bookingService = bookingService;
+        this.maxGroupSize = maxGroupSize;
     }
 
     /**
@@ -49,13 +130,23 @@ public class RideService {    private static final Logger logger = LoggerFactory
             ride.getDepartureTime() == null || ride.getAvailableSeats() < 1 || ride.getMaxPassengers() < 1) {
             throw new BadRequestException("Missing required fields or invalid values");
         }
-        return rideRepository.save(ride);
+        if (ride.getRoute() != null && ride.getRoute().getCoordinates().size() < 2) {
+            throw new BadRequestException("Route must have at least two points");
+        }
+        ride.setVersion(null); // always inserted as a new ride
+        Ride savedRide = rideRepository.save(ride);
+        locationIndex.index(savedRide);
+        corridorIndex.index(savedRide);
+        upcomingIndex.index(savedRide);
+        searchCache.invalidate();
+        return savedRide;
     }
 
     /**
-     * Search rides with pagination and date filtering
+     * Search rides with pagination and date filtering.
+     * Returns a Page with totals when withTotal is set, otherwise a Slice that only knows whether more rides follow.
      */
-    public Page<Ride> searchRides(
+    public Slice<RideSummary> searchRides(
         String origin,
         String destination,
         LocalDateTime from,
@@ -68,95 +159,492 @@ public class RideService {    private static final Logger logger = LoggerFactory
         int page,
         int size,
         String sortBy,
-        String sortDir
+        String sortDir,
+        boolean withTotal
 ) {
-    Criteria criteria = new Criteria();
+    // Sorting
+    Sort sort = Sort.unsorted();
+    if (sortBy != null && sortDir != null) {
+        Sort.Direction direction = sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
+        sort = Sort.by(direction, sortBy);
+    }
 
-    List<Criteria> filters = new ArrayList<>();
+    // Pagination
+    Pageable pageable = PageRequest.of(page, size, sort);
 
-    if (origin != null && !origin.isEmpty()) {
-        filters.add(Criteria.where("origin").regex(origin, "i"));
-    }
+    String cacheKey = RideSearchCache.key("page", RideLocationIndex.normalize(origin), RideLocationIndex.normalize(destination),
+            from, to, maxPrice, minSeats, includeFull, statusKey(statuses), includePastRides, page, size, sort, withTotal);
+    return searchCache.get(cacheKey, () -> {
+        Slice<RideSummary> upcoming = searchUpcoming(origin, destination, from, to, maxPrice, minSeats, includeFull,
+                statuses, includePastRides, pageable, withTotal);
+        if (upcoming != null) {
+            return withHolds(upcoming);
+        }
 
-    if (destination != null && !destination.isEmpty()) {
-        filters.add(Criteria.where("destination").regex(destination, "i"));
-    }
+        List<Criteria> filters = searchFilters(origin, destination, from, to, maxPrice, minSeats, includeFull, statuses, includePastRides);
+        if (filters == null) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
 
-    if (!includePastRides) {
-        filters.add(Criteria.where("departureTime").gte(LocalDateTime.now()));
-    }
+        logger.debug("Search filters applied: {}", filters);
 
-    if (from != null) {
-        filters.add(Criteria.where("departureTime").gte(from));
+        return withHolds(findPage("search", combine(filters), pageable, withTotal));
+    });
+}
+
+    /**
+     * Search rides with keyset pagination: each page starts strictly after the (sort key, id)
+     * encoded in the previous page's cursor, so deep pages cost the same as the first one.
+     * The total is only counted when requested.
+     */
+    public CursorPagedResponse<RideSummary> searchRidesAfter(
+            String origin,
+            String destination,
+            LocalDateTime from,
+            LocalDateTime to,
+            Double maxPrice,
+            Integer minSeats,
+            Boolean includeFull,
+            List<RideStatus> statuses,
+            boolean includePastRides,
+            String after,
+            int size,
+            String sortBy,
+            String sortDir,
+            boolean withTotal
+    ) {
+        String cacheKey = RideSearchCache.key("cursor", RideLocationIndex.normalize(origin), RideLocationIndex.normalize(destination),
+                from, to, maxPrice, minSeats, includeFull, statusKey(statuses), includePastRides, after, size, sortBy,
+                "desc".equalsIgnoreCase(sortDir), withTotal);
+        return searchCache.get(cacheKey, () -> findRidesAfter(origin, destination, from, to, maxPrice, minSeats, includeFull,
+                statuses, includePastRides, after, size, sortBy, sortDir, withTotal));
     }
 
-    if (to != null) {
-        filters.add(Criteria.where("departureTime").lte(to));
+    private CursorPagedResponse<RideSummary> findRidesAfter(
+            String origin,
+            String destination,
+            LocalDateTime from,
+            LocalDateTime to,
+            Double maxPrice,
+            Integer minSeats,
+            Boolean includeFull,
+            List<RideStatus> statuses,
+            boolean includePastRides,
+            String after,
+            int size,
+            String sortBy,
+            String sortDir,
+            boolean withTotal
+    ) {
+        if (!SearchCursor.SORT_KEYS.contains(sortBy)) {
+            throw new BadRequestException("Cursor pagination can only sort by " + SearchCursor.SORT_KEYS);
+        }
+        boolean descending = "desc".equalsIgnoreCase(sortDir);
+
+        List<Criteria> filters = searchFilters(origin, destination, from, to, maxPrice, minSeats, includeFull, statuses, includePastRides);
+        if (filters == null) {
+            return new CursorPagedResponse<>(List.of(), size, withTotal ? 0 : -1, null);
+        }
+
+        Criteria cursorCriteria = new Criteria();
+        if (after != null && !after.isEmpty()) {
+            SearchCursor cursor = SearchCursor.decode(after);
+            if (!cursor.getSortBy().equals(sortBy) || cursor.isDescending() != descending) {
+                throw new BadRequestException("Cursor does not match the requested sort order");
+            }
+            cursorCriteria = cursor.toCriteria();
+        }
+
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = Sort.by(direction, sortBy).and(Sort.by(direction, "id"));
+
+        logger.debug("Keyset search filters applied: {}, after: {}", filters, after);
+
+        // Fetch one extra row to learn whether another page exists
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<RideSummary> rides;
+        long total = -1;
+        if (withTotal) {
+            // The total covers every match; the cursor only narrows the page sub-pipeline
+            FacetResult result = facet(combine(filters), sort,
+                    Aggregation.match(cursorCriteria), Aggregation.limit(size + 1), Aggregation.project(RideSummary.FIELDS));
+            rides = result.content();
+            total = result.total();
+        } else {
+            filters.add(cursorCriteria);
+            rides = findSummaries(new Query(combine(filters)).with(sort).limit(size + 1));
+        }
+        sample.stop(meterRegistry.timer(QUERY_TIMER, "path", "search-cursor", "mode", withTotal ? "facet" : "page-only"));
+        String nextCursor = null;
+        if (rides.size() > size) {
+            rides = rides.subList(0, size);
+            nextCursor = SearchCursor.of(rides.get(size - 1), sortBy, descending).encode();
+        }
+        // After the cursor is taken, so it keeps the stored seat count the query sorted on
+        withHolds(rides);
+
+        return new CursorPagedResponse<>(rides, size, total, nextCursor);
     }
 
-    if (maxPrice != null) {
-        filters.add(Criteria.where("price").lte(maxPrice));
+    /**
+     * Stream every ride matching the search filters to the consumer, ordered by departure time.
+     * Reads through a Mongo cursor one batch at a time, so memory use does not grow with the
+     * number of results; a slow consumer simply delays the next getMore. Returns the number of rides.
+     */
+    public long streamRides(
+            String origin,
+            String destination,
+            LocalDateTime from,
+            LocalDateTime to,
+            Double maxPrice,
+            Integer minSeats,
+            Boolean includeFull,
+            List<RideStatus> statuses,
+            boolean includePastRides,
+            Consumer<RideSummary> consumer
+    ) {
+        List<Criteria> filters = searchFilters(origin, destination, from, to, maxPrice, minSeats, includeFull, statuses, includePastRides);
+        if (filters == null) {
+            return 0;
+        }
+        Query query = new Query(combine(filters))
+                .with(Sort.by(Sort.Direction.ASC, "departureTime").and(Sort.by(Sort.Direction.ASC, "id")))
+                .cursorBatchSize(exportBatchSize);
+        query.fields().include(RideSummary.FIELDS);
+
+        long count = 0;
+        try (Stream<RideSummary> rides = mongoTemplate.query(Ride.class).as(RideSummary.class).matching(query).stream()) {
+            for (RideSummary ride : (Iterable<RideSummary>) rides::iterator) {
+                consumer.accept(withHold(ride));
+                count++;
+            }
+        }
+        logger.debug("Streamed {} rides with filters {}", count, filters);
+        return count;
     }
 
-    // ✅ Combine availableSeats conditions into one
-    if (minSeats != null && !includeFull) {
-        filters.add(Criteria.where("availableSeats").gte(minSeats));
-    } else if (minSeats != null) {
-        filters.add(Criteria.where("availableSeats").gte(minSeats));
-    } else if (!includeFull) {
-        filters.add(Criteria.where("availableSeats").gt(0));
+    /**
+     * Find rides whose pickup (or drop-off) point lies within radiusMeters of the given point,
+     * nearest first. Uses $geoNear on the 2dsphere index with the usual search filters applied
+     * inside the geo query; only SCHEDULED rides are returned unless statuses are given.
+     */
+    public List<NearbyRideDTO> findNearbyRides(
+            double latitude,
+            double longitude,
+            double radiusMeters,
+            boolean byDropoff,
+            LocalDateTime from,
+            LocalDateTime to,
+            Double maxPrice,
+            Integer minSeats,
+            Boolean includeFull,
+            List<RideStatus> statuses,
+            int size
+    ) {
+        List<RideStatus> statusFilter = (statuses == null || statuses.isEmpty()) ? List.of(RideStatus.SCHEDULED) : statuses;
+        List<Criteria> filters = searchFilters(null, null, from, to, maxPrice, minSeats, includeFull, statusFilter, false);
+        Criteria criteria = combine(filters);
+        String key = byDropoff ? "dropoffLocation" : "pickupLocation";
+
+        // Built by hand so the 2dsphere index key can be named: rides carry two of them
+        AggregationOperation geoNear = context -> new Document("$geoNear", new Document()
+                .append("near", new Document("type", "Point").append("coordinates", List.of(longitude, latitude)))
+                .append("key", key)
+                .append("distanceField", "distanceMeters")
+                .append("maxDistance", radiusMeters)
+                .append("spherical", true)
+                .append("query", context.getMappedObject(criteria.getCriteriaObject())));
+        // Only the summary fields and the distance leave the server, as for the other list endpoints
+        Document fields = new Document("distanceMeters", 1);
+        for (String field : RideSummary.FIELDS) {
+            fields.append("id".equals(field) ? "_id" : field, 1);
+        }
+        AggregationOperation project = context -> new Document("$project", fields);
+        Aggregation aggregation = Aggregation.newAggregation(geoNear, Aggregation.limit(size), project);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<NearbyRideDTO> rides = new ArrayList<>();
+        for (Document document : mongoTemplate.aggregate(aggregation, Ride.class, Document.class)) {
+            double distance = ((Number) document.get("distanceMeters")).doubleValue();
+            RideSummary ride = mongoTemplate.getConverter().read(RideSummary.class, document);
+            rides.add(new NearbyRideDTO(withHold(ride), distance));
+        }
+        sample.stop(meterRegistry.timer(QUERY_TIMER, "path", "nearby", "mode", "geo-near"));
+        return rides;
     }
 
-    if (statuses != null && !statuses.isEmpty()) {
-        filters.add(Criteria.where("status").in(statuses));
+    /**
+     * Find scheduled rides with free seats whose route passes within maxDistanceMeters of the
+     * pickup and then the drop-off. Candidates come from the in-memory route grid, closest
+     * first; Mongo only confirms the current status, seats and departure time of as many of
+     * them as the page needs, returning their summaries.
+     */
+    public List<RouteMatchDTO> findRidesAlongRoute(
+            double pickupLat,
+            double pickupLng,
+            double dropoffLat,
+            double dropoffLng,
+            double maxDistanceMeters,
+            int size
+    ) {
+        List<RouteCorridorIndex.RouteMatch> matches =
+                corridorIndex.match(pickupLat, pickupLng, dropoffLat, dropoffLng, maxDistanceMeters);
+        List<RouteMatchDTO> rides = new ArrayList<>();
+        // Matches are ordered by walking distance; confirm them a page at a time until the page is full
+        for (int from = 0; from < matches.size() && rides.size() < size; from += size) {
+            List<RouteCorridorIndex.RouteMatch> chunk = matches.subList(from, Math.min(matches.size(), from + size));
+            Map<String, RideSummary> byId = new HashMap<>();
+            List<String> ids = chunk.stream().map(RouteCorridorIndex.RouteMatch::rideId).toList();
+            for (RideSummary ride : findSummaries(new Query(Criteria.where("id").in(ids)
+                    .and("status").is(RideStatus.SCHEDULED)
+                    .and("departureTime").gte(LocalDateTime.now())
+                    .and("availableSeats").gt(0)))) {
+                byId.put(ride.getId(), ride);
+            }
+            for (RouteCorridorIndex.RouteMatch match : chunk) {
+                RideSummary ride = byId.get(match.rideId());
+                if (ride != null && rides.size() < size) {
+                    rides.add(new RouteMatchDTO(withHold(ride), match.pickupDistanceMeters(), match.dropoffDistanceMeters()));
+                }
+            }
+        }
+        return rides;
     }
 
-    if (!filters.isEmpty()) {
-        criteria.andOperator(filters.toArray(new Criteria[0]));
+    /**
+     * Serve a search for upcoming SCHEDULED rides from the upcoming departures index.
+     * The index answers the filters, sort and paging; Mongo is only asked for the summaries
+     * of the rides on the page, by id. Returns null when the index cannot give the same
+     * answer as Mongo: other statuses, past rides, a sort it does not hold, a location index
+     * that is not built yet, or a window past the index coverage (allowed only when
+     * sorting by departure time without a total and the page fills up inside the coverage).
+     */
+    private Slice<RideSummary> searchUpcoming(
+            String origin,
+            String destination,
+            LocalDateTime from,
+            LocalDateTime to,
+            Double maxPrice,
+            Integer minSeats,
+            Boolean includeFull,
+            List<RideStatus> statuses,
+            boolean includePastRides,
+            Pageable pageable,
+            boolean withTotal
+    ) {
+        if (includePastRides || searchStatuses(statuses, false).stream().anyMatch(status -> status != RideStatus.SCHEDULED)) {
+            return null;
+        }
+        Sort.Order order = pageable.getSort().stream().findFirst().orElse(null);
+        String sortBy = order == null ? "departureTime" : order.getProperty();
+        if (!SearchCursor.SORT_KEYS.contains(sortBy) || pageable.getSort().stream().count() > 1) {
+            return null;
+        }
+        boolean byDepartureAsc = "departureTime".equals(sortBy) && (order == null || order.isAscending());
+        boolean covered = upcomingIndex.covers(to);
+        if (!covered && (withTotal || !byDepartureAsc)) {
+            return null;
+        }
+
+        // No candidate limit here: the location filter is applied in memory alongside the date and seat filters
+        Predicate<String> locationFilter = null;
+        if ((origin != null && !origin.isEmpty()) || (destination != null && !destination.isEmpty())) {
+            locationFilter = locationIndex.matcher(origin, destination);
+            if (locationFilter == null) {
+                return null;
+            }
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime start = from != null && from.isAfter(now) ? from : now;
+        int seatFloor = minSeats != null ? minSeats : (includeFull != null && includeFull ? Integer.MIN_VALUE : 1);
+        long offset = pageable.getOffset();
+        int wanted = (int) Math.min(Integer.MAX_VALUE, offset + pageable.getPageSize() + 1);
+
+        List<UpcomingDeparturesIndex.UpcomingRide> matches = upcomingIndex.find(start, to, locationFilter, maxPrice, seatFloor,
+                covered && (withTotal || !byDepartureAsc) ? Integer.MAX_VALUE : wanted);
+        if (!covered && matches.size() < wanted) {
+            // Rides departing after the coverage end could still belong on this page
+            return null;
+        }
+        if (!byDepartureAsc) {
+            Comparator<UpcomingDeparturesIndex.UpcomingRide> comparator = switch (sortBy) {
+                case "price" -> Comparator.comparingDouble(UpcomingDeparturesIndex.UpcomingRide::price);
+                case "availableSeats" -> Comparator.comparingInt(UpcomingDeparturesIndex.UpcomingRide::availableSeats);
+                default -> Comparator.comparing(UpcomingDeparturesIndex.UpcomingRide::departureTime);
+            };
+            matches = new ArrayList<>(matches);
+            matches.sort(order.isAscending() ? comparator : comparator.reversed());
+        }
+
+        List<String> pageIds = matches.stream()
+                .skip(offset)
+                .limit(pageable.getPageSize())
+                .map(UpcomingDeparturesIndex.UpcomingRide::rideId)
+                .toList();
+        List<RideSummary> rides = new ArrayList<>();
+        if (!pageIds.isEmpty()) {
+            Map<String, RideSummary> byId = new HashMap<>();
+            for (RideSummary ride : findSummaries(new Query(Criteria.where("id").in(pageIds)))) {
+                byId.put(ride.getId(), ride);
+            }
+            for (String id : pageIds) {
+                RideSummary ride = byId.get(id);
+                // The index can lag writes made on other nodes; serve only rows that still match in Mongo
+                if (ride != null && ride.getStatus() == RideStatus.SCHEDULED
+                        && ride.getAvailableSeats() >= seatFloor
+                        && (maxPrice == null || ride.getPrice() <= maxPrice)
+                        && !ride.getDepartureTime().isBefore(start)
+                        && (to == null || !ride.getDepartureTime().isAfter(to))) {
+                    rides.add(ride);
+                }
+            }
+        }
+        sample.stop(meterRegistry.timer(QUERY_TIMER, "path", "search", "mode", "upcoming-index"));
+
+        if (withTotal) {
+            return new PageImpl<>(rides, pageable, matches.size());
+        }
+        return new SliceImpl<>(rides, pageable, matches.size() > offset + pageable.getPageSize());
     }
 
-    Query query = new Query(criteria);
+    // Build the search filters; returns null when the location index proves nothing can match
+    private List<Criteria> searchFilters(
+            String origin,
+            String destination,
+            LocalDateTime from,
+            LocalDateTime to,
+            Double maxPrice,
+            Integer minSeats,
+            Boolean includeFull,
+            List<RideStatus> statuses,
+            boolean includePastRides
+    ) {
+        List<Criteria> filters = new ArrayList<>();
 
-    // Pagination
-    Pageable pageable = PageRequest.of(page, size);
-    query.with(pageable);
+        boolean hasOrigin = origin != null && !origin.isEmpty();
+        boolean hasDestination = destination != null && !destination.isEmpty();
 
-    // Sorting
-    if (sortBy != null && sortDir != null) {
-        Sort.Direction direction = sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
-        query.with(Sort.by(direction, sortBy));
+        // Resolve text filters through the location index; fall back to a literal regex if it can't answer
+        Set<String> candidateIds = (hasOrigin || hasDestination)
+                ? locationIndex.findCandidateIds(origin, destination)
+                : null;
+        if (candidateIds != null) {
+            if (candidateIds.isEmpty()) {
+                return null;
+            }
+            filters.add(Criteria.where("id").in(candidateIds));
+        } else {
+            if (hasOrigin) {
+                filters.add(Criteria.where("origin").regex(Pattern.quote(origin), "i"));
+            }
+            if (hasDestination) {
+                filters.add(Criteria.where("destination").regex(Pattern.quote(destination), "i"));
+            }
+        }
+
+        if (!includePastRides) {
+            filters.add(Criteria.where("departureTime").gte(LocalDateTime.now()));
+        }
+
+        if (from != null) {
+            filters.add(Criteria.where("departureTime").gte(from));
+        }
+
+        if (to != null) {
+            filters.add(Criteria.where("departureTime").lte(to));
+        }
+
+        if (maxPrice != null) {
+            filters.add(Criteria.where("price").lte(maxPrice));
+        }
+
+        // ✅ Combine availableSeats conditions into one
+        if (minSeats != null && !includeFull) {
+            filters.add(Criteria.where("availableSeats").gte(minSeats));
+        } else if (minSeats != null) {
+            filters.add(Criteria.where("availableSeats").gte(minSeats));
+        } else if (!includeFull) {
+            filters.add(Criteria.where("availableSeats").gt(0));
+        }
+
+        List<RideStatus> statusFilter = searchStatuses(statuses, includePastRides);
+        if (!statusFilter.isEmpty()) {
+            filters.add(Criteria.where("status").in(statusFilter));
+        }
+
+        return filters;
     }
 
-    logger.debug("Search filters applied: {}", query);
+    // Without a status filter, a search for upcoming rides means SCHEDULED ones, as for nearby rides; past searches cover every status
+    private static List<RideStatus> searchStatuses(List<RideStatus> statuses, boolean includePastRides) {
+        if (statuses != null && !statuses.isEmpty()) {
+            return statuses;
+        }
+        return includePastRides ? List.of() : List.of(RideStatus.SCHEDULED);
+    }
 
-    List<Ride> rides = mongoTemplate.find(query, Ride.class);
-    long count = mongoTemplate.count(query.skip(-1).limit(-1), Ride.class); // Count without pagination
+    // Show seats held by students who have not confirmed yet as taken; search pages are invalidated when holds change
+    private <S extends Iterable<RideSummary>> S withHolds(S rides) {
+        for (RideSummary ride : rides) {
+            withHold(ride);
+        }
+        return rides;
+    }
 
-    return new PageImpl<>(rides, pageable, count);
-}
+    private RideSummary withHold(RideSummary ride) {
+        int held = seatHolds.held(ride.getId());
+        if (held > 0) {
+            ride.setAvailableSeats(Math.max(0, ride.getAvailableSeats() - held));
+        }
+        return ride;
+    }
 
+    // Order-independent cache key component for a status filter
+    private static String statusKey(List<RideStatus> statuses) {
+        return statuses == null ? "" : statuses.stream().map(Enum::name).sorted().distinct().toList().toString();
+    }
+
+    private Criteria combine(List<Criteria> filters) {
+        Criteria criteria = new Criteria();
+        if (!filters.isEmpty()) {
+            criteria.andOperator(filters.toArray(new Criteria[0]));
+        }
+        return criteria;
+    }
 
     /**
      * Cancel a booking for a student.
+     * Removes the passenger and frees the seat in one conditional update.
      */
     public void cancelBooking(String rideId, String username) {
         logger.debug("Cancel booking request for rideId: {}, username: {}", rideId, username);
 
-        Ride ride = rideRepository.findById(rideId)
-                .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
-
-        if (!ride.getPassengers().contains(username)) {
+        Ride updatedRide = releaseSeat(Criteria.where("id").is(rideId).and("passengers").is(username), username);
+        if (updatedRide == null) {
+            if (!rideRepository.existsById(rideId)) {
+                throw new ResourceNotFoundException("Ride not found");
+            }
             throw new ConflictException("You have not booked this ride");
         }
 
-        // Remove passenger and increase available seats
-        ride.getPassengers().remove(username);
-        ride.setAvailableSeats(ride.getAvailableSeats() + 1);
-
-        Ride updatedRide = rideRepository.save(ride);
+        bookingService.recordReleased(rideId, username, BookingStatus.CANCELLED);
+        upcomingIndex.index(updatedRide);
+        bookingAdmission.reopen(rideId);
+        searchCache.invalidate();
         notificationService.notifyRideStatusChange(updatedRide);
 
         logger.info("Booking cancelled for user {} on ride {}", username, rideId);
+        promoteWaitlisted(rideId);
+    }
+
+    // Pull a passenger and give their seat back, only if the ride still matches; returns the updated ride or null
+    private Ride releaseSeat(Criteria criteria, String passengerUsername) {
+        Update update = new Update()
+                .pull("passengers", passengerUsername)
+                .inc("availableSeats", 1);
+        return mongoTemplate.findAndModify(new Query(criteria), update, FindAndModifyOptions.options().returnNew(true), Ride.class);
     }
 
     /**
@@ -173,25 +661,28 @@ public class RideService {    private static final Logger logger = LoggerFactory
     public Ride updateRideStatus(String rideId, String driverUsername, RideStatus newStatus) {
         logger.debug("Updating ride {} status to {} by driver {}", rideId, newStatus, driverUsername);
 
-        Optional<Ride> optionalRide = rideRepository.findById(rideId);
-        if (optionalRide.isEmpty()) {
-            throw new ResourceNotFoundException("Ride not found");
-        }
+        // Re-read and re-check on every attempt, so a concurrent booking or status change is never overwritten
+        Ride savedRide = writeRetry.run(rideId, () -> {
+            Ride ride = rideRepository.findById(rideId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
 
-        Ride ride = optionalRide.get();
+            // Verify the driver owns this ride
+            if (ride.getDriverUsername() == null || !ride.getDriverUsername().equals(driverUsername)) {
+                throw new UnauthorizedException("You are not the driver of this ride.");
+            }
 
-        // Verify the driver owns this ride
-        if (ride.getDriverUsername() == null || !ride.getDriverUsername().equals(driverUsername)) {
-            throw new UnauthorizedException("You are not the driver of this ride.");
-        }
-
-        // Check valid status transition
-        if (!isValidStatusTransition(ride.getStatus(), newStatus)) {
-            throw new BadRequestException("Invalid status transition from " + ride.getStatus() + " to " + newStatus);
-        }
+            // Check valid status transition
+            if (!isValidStatusTransition(ride.getStatus(), newStatus)) {
+                throw new BadRequestException("Invalid status transition from " + ride.getStatus() + " to " + newStatus);
+            }
 
-        ride.setStatus(newStatus);
-        Ride savedRide = rideRepository.save(ride);
+            ride.setStatus(newStatus);
+            return rideRepository.save(ride);
+        });
+        searchCache.invalidate();
+        corridorIndex.index(savedRide);
+        upcomingIndex.index(savedRide);
+        bookingAdmission.reopen(rideId);
 
         // Send notifications for status change
         notificationService.notifyRideStatusChange(savedRide);
@@ -207,94 +698,529 @@ public class RideService {    private static final Logger logger = LoggerFactory
     }
 
     /**
-     * Book a ride with date validation
+     * Book a ride with date validation.
+     * Attempts go through the per-ride admission queue, which refuses bookings on rides it
+     * already knows are full without touching Mongo.
      */
     public Ride bookRide(String rideId, String studentUsername) {
         logger.debug("Booking ride {} for student {}", rideId, studentUsername);
-        
-        Ride ride = getRideById(rideId)
-            .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
 
-        // Validate ride status
-        if (ride.getStatus() != RideStatus.SCHEDULED) {
-            throw new ConflictException("This ride cannot be booked (status: " + ride.getStatus() + ")");
+        // Send booking notifications once the seat is held, outside the admission queue
+        return bookingAdmission.book(rideId, studentUsername, false, () -> claimSeat(rideId, studentUsername),
+                savedRide -> notificationService.notifyRideBooked(savedRide, studentUsername));
+    }
+
+    /**
+     * Hold a seat for the student for a short time, without booking it yet.
+     * Held seats are not offered to anyone else; the hold is confirmed with confirmHold or
+     * lapses on its own. Holding again extends the student's existing hold.
+     */
+    public SeatHold holdSeat(String rideId, String studentUsername) {
+        logger.debug("Holding a seat on ride {} for student {}", rideId, studentUsername);
+
+        return bookingAdmission.exclusive(rideId, () -> {
+            Ride ride = rideRepository.findById(rideId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+            if (ride.getStatus() != RideStatus.SCHEDULED) {
+                throw new ConflictException("This ride cannot be booked (status: " + ride.getStatus() + ")");
+            }
+            if (ride.getDepartureTime().isBefore(LocalDateTime.now())) {
+                throw new ConflictException("Cannot book a ride that has already departed");
+            }
+            if (ride.getPassengers().contains(studentUsername)) {
+                throw new ConflictException("You have already booked this ride");
+            }
+            int heldByOthers = seatHolds.heldByOthers(rideId, studentUsername);
+            if (ride.getAvailableSeats() - heldByOthers - waitlistSize(ride) <= 0) {
+                throw new RideFullException("No seats available");
+            }
+            if (ride.getMaxPassengers() > 0 && ride.getPassengers().size() + heldByOthers >= ride.getMaxPassengers()) {
+                throw new RideFullException("Ride is full");
+            }
+            return seatHolds.hold(rideId, studentUsername);
+        });
+    }
+
+    /**
+     * Book the seat the student is holding.
+     */
+    public Ride confirmHold(String rideId, String studentUsername) {
+        logger.debug("Confirming seat hold on ride {} for student {}", rideId, studentUsername);
+        if (seatHolds.find(rideId, studentUsername) == null) {
+            throw new ConflictException("You have no active hold on this ride");
+        }
+        return bookingAdmission.book(rideId, studentUsername, true, () -> {
+            // The hold may have lapsed while this request was queued
+            if (seatHolds.find(rideId, studentUsername) == null) {
+                throw new ConflictException("Your hold on this ride has expired");
+            }
+            return claimSeat(rideId, studentUsername);
+        }, savedRide -> notificationService.notifyRideBooked(savedRide, studentUsername));
+    }
+
+    /**
+     * Give up a seat hold before it expires.
+     */
+    public void releaseHold(String rideId, String studentUsername) {
+        if (!seatHolds.release(rideId, studentUsername)) {
+            throw new ResourceNotFoundException("No active hold on this ride");
+        }
+        logger.info("Seat hold released by {} on ride {}", studentUsername, rideId);
+        promoteWaitlisted(rideId);
+    }
+
+    /**
+     * Take a seat for the student.
+     * The preconditions are part of a single conditional findAndModify, so concurrent bookings
+     * can neither oversell seats nor overwrite each other's passengers. The ride is only read
+     * back when the update matched nothing, to report why.
+     */
+    private Ride claimSeat(String rideId, String studentUsername) {
+        LocalDateTime now = LocalDateTime.now();
+        // Seats held by other students are not available (the student's own hold is), and waitlisted students come first
+        int heldByOthers = seatHolds.heldByOthers(rideId, studentUsername);
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("id").is(rideId),
+                Criteria.where("status").is(RideStatus.SCHEDULED),
+                Criteria.where("departureTime").gte(now),
+                Criteria.where("availableSeats").gt(heldByOthers),
+                Criteria.expr(seatsBeyondWaitlist(heldByOthers)),
+                Criteria.where("passengers").ne(studentUsername),
+                // Enforce maxPassengers when it is set
+                new Criteria().orOperator(
+                        Criteria.where("maxPassengers").lte(0),
+                        Criteria.expr(ComparisonOperators.Lt.valueOf(
+                                        ArithmeticOperators.Add.valueOf(ArrayOperators.Size.lengthOfArray("passengers")).add(heldByOthers))
+                                .lessThan("maxPassengers")))));
+        Update update = new Update()
+                .addToSet("passengers", studentUsername)
+                .pull("waitlist", studentUsername)
+                .inc("availableSeats", -1);
+
+        Ride savedRide = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Ride.class);
+        if (savedRide == null) {
+            throw bookingRejection(rideId, studentUsername, now, heldByOthers);
         }
+        bookingService.recordBooked(rideId, List.of(studentUsername));
+        seatHolds.release(rideId, studentUsername);
+        upcomingIndex.index(savedRide);
+        searchCache.invalidate();
+        return savedRide;
+    }
 
-        // Validate departure time
-        if (ride.getDepartureTime().isBefore(LocalDateTime.now())) {
-            throw new ConflictException("Cannot book a ride that has already departed");
+    /**
+     * Book seats for several students at once, all or nothing.
+     * Every seat is taken by one conditional findAndModify, so either the whole group is booked
+     * or nobody is. The requesting student is always part of the group.
+     */
+    public Ride bookGroup(String rideId, String requesterUsername, List<String> usernames) {
+        Set<String> group = new LinkedHashSet<>();
+        group.add(requesterUsername);
+        for (String username : usernames) {
+            if (username == null || username.isBlank()) {
+                throw new BadRequestException("Usernames must not be blank");
+            }
+            group.add(username.trim());
+        }
+        if (group.size() > maxGroupSize) {
+            throw new BadRequestException("A group booking can include at most " + maxGroupSize + " students");
+        }
+        if (userRepository.countByUsernameInAndRole(group, Role.ROLE_STUDENT) != group.size()) {
+            throw new BadRequestException("Every member of a group booking must be a registered student");
         }
+        List<String> members = new ArrayList<>(group);
+        logger.debug("Booking ride {} for group of {} requested by {}", rideId, members.size(), requesterUsername);
+
+        // Pending requests are coalesced per group, whatever order its members were listed in
+        String groupKey = "group:" + String.join(",", members.stream().sorted().toList());
+        return bookingAdmission.book(rideId, groupKey, false, () -> claimSeats(rideId, members),
+                savedRide -> notificationService.notifyGroupBooked(savedRide, members));
+    }
+
+    // Group variant of claimSeat: the same conditions, with room for every member
+    private Ride claimSeats(String rideId, List<String> members) {
+        LocalDateTime now = LocalDateTime.now();
+        int seats = members.size();
+        int heldByOthers = seatHolds.heldByOthers(rideId, members);
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("id").is(rideId),
+                Criteria.where("status").is(RideStatus.SCHEDULED),
+                Criteria.where("departureTime").gte(now),
+                Criteria.where("availableSeats").gte(heldByOthers + seats),
+                Criteria.expr(seatsForGroup(heldByOthers, members)),
+                Criteria.where("passengers").nin(members),
+                new Criteria().orOperator(
+                        Criteria.where("maxPassengers").lte(0),
+                        Criteria.expr(ComparisonOperators.Lte.valueOf(
+                                        ArithmeticOperators.Add.valueOf(ArrayOperators.Size.lengthOfArray("passengers")).add(heldByOthers + seats))
+                                .lessThanEqualTo("maxPassengers")))));
+        Update update = new Update()
+                .addToSet("passengers").each(members.toArray())
+                .pullAll("waitlist", members.toArray())
+                .inc("availableSeats", -seats);
 
-        // Check available seats
-        if (ride.getAvailableSeats() <= 0) {
-            throw new ConflictException("No seats available");
+        Ride savedRide = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Ride.class);
+        if (savedRide == null) {
+            throw groupBookingRejection(rideId, members, now, heldByOthers);
         }
+        bookingService.recordBooked(rideId, members);
+        for (String member : members) {
+            seatHolds.release(rideId, member);
+        }
+        upcomingIndex.index(savedRide);
+        searchCache.invalidate();
+        return savedRide;
+    }
 
-        // Check if student has already booked
+    private RuntimeException groupBookingRejection(String rideId, List<String> members, LocalDateTime now, int heldByOthers) {
+        Ride ride = rideRepository.findById(rideId).orElse(null);
+        if (ride == null) {
+            return new ResourceNotFoundException("Ride not found");
+        }
+        if (ride.getStatus() != RideStatus.SCHEDULED) {
+            return new ConflictException("This ride cannot be booked (status: " + ride.getStatus() + ")");
+        }
+        if (ride.getDepartureTime().isBefore(now)) {
+            return new ConflictException("Cannot book a ride that has already departed");
+        }
+        List<String> booked = members.stream().filter(ride.getPassengers()::contains).toList();
+        if (!booked.isEmpty()) {
+            return new ConflictException("Already booked on this ride: " + String.join(", ", booked));
+        }
+        return new RideFullException("Not enough seats available for " + members.size() + " passengers");
+    }
+
+    // availableSeats >= held + group size + students waitlisted outside the group, as an $expr
+    private static AggregationExpression seatsForGroup(int held, List<String> members) {
+        return context -> new Document("$gte", List.of("$availableSeats",
+                new Document("$add", List.of(held, members.size(), new Document("$size",
+                        new Document("$setDifference", List.of(new Document("$ifNull", List.of("$waitlist", List.of())), members)))))));
+    }
+
+    // Explain why a conditional booking matched nothing, with the same messages as the checks it replaces
+    private RuntimeException bookingRejection(String rideId, String studentUsername, LocalDateTime now, int heldByOthers) {
+        Ride ride = rideRepository.findById(rideId).orElse(null);
+        if (ride == null) {
+            return new ResourceNotFoundException("Ride not found");
+        }
+        if (ride.getStatus() != RideStatus.SCHEDULED) {
+            return new ConflictException("This ride cannot be booked (status: " + ride.getStatus() + ")");
+        }
+        if (ride.getDepartureTime().isBefore(now)) {
+            return new ConflictException("Cannot book a ride that has already departed");
+        }
         if (ride.getPassengers().contains(studentUsername)) {
-            throw new ConflictException("You have already booked this ride");
+            return new ConflictException("You have already booked this ride");
         }
+        if (ride.getAvailableSeats() - heldByOthers - waitlistSize(ride) <= 0) {
+            return new RideFullException("No seats available");
+        }
+        return new RideFullException("Ride is full");
+    }
 
-        // Enforce maxPassengers
-        if (ride.getMaxPassengers() > 0 && ride.getPassengers().size() >= ride.getMaxPassengers()) {
-            throw new ConflictException("Ride is full");
+    // availableSeats > held + waitlist length, as an $expr (rides stored before the waitlist existed have none)
+    private static AggregationExpression seatsBeyondWaitlist(int held) {
+        return context -> new Document("$gt", List.of("$availableSeats",
+                new Document("$add", List.of(held, new Document("$size", new Document("$ifNull", List.of("$waitlist", List.of())))))));
+    }
+
+    private static int waitlistSize(Ride ride) {
+        return ride.getWaitlist() == null ? 0 : ride.getWaitlist().size();
+    }
+
+    /**
+     * Join the waitlist of a ride. If a seat is free for the student by the time they are queued,
+     * they are booked straight away. Returns the student's position, or 0 when booked.
+     */
+    public int joinWaitlist(String rideId, String studentUsername) {
+        logger.debug("Student {} joining the waitlist of ride {}", studentUsername, rideId);
+
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("id").is(rideId),
+                Criteria.where("status").is(RideStatus.SCHEDULED),
+                Criteria.where("departureTime").gte(LocalDateTime.now()),
+                Criteria.where("passengers").ne(studentUsername),
+                Criteria.where("waitlist").ne(studentUsername),
+                Criteria.where("waitlist." + (maxWaitlistSize - 1)).exists(false)));
+        if (mongoTemplate.updateFirst(query, new Update().push("waitlist", studentUsername), Ride.class).getModifiedCount() == 0) {
+            Ride ride = rideRepository.findById(rideId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+            if (ride.getStatus() != RideStatus.SCHEDULED) {
+                throw new ConflictException("This ride cannot be booked (status: " + ride.getStatus() + ")");
+            }
+            if (ride.getDepartureTime().isBefore(LocalDateTime.now())) {
+                throw new ConflictException("Cannot book a ride that has already departed");
+            }
+            if (ride.getPassengers().contains(studentUsername)) {
+                throw new ConflictException("You have already booked this ride");
+            }
+            if (ride.getWaitlist() != null && ride.getWaitlist().contains(studentUsername)) {
+                throw new ConflictException("You are already on the waitlist for this ride");
+            }
+            throw new ConflictException("The waitlist for this ride is full");
         }
+        logger.info("Student {} joined the waitlist of ride {}", studentUsername, rideId);
 
-        // Add passenger and update seats
-        ride.getPassengers().add(studentUsername);
-        ride.setAvailableSeats(ride.getAvailableSeats() - 1);
+        promoteWaitlisted(rideId);
+        return getWaitlistPosition(rideId, studentUsername);
+    }
 
-        Ride savedRide = rideRepository.save(ride);
-        
-        // Send booking notifications
-        notificationService.notifyRideBooked(savedRide, studentUsername);
+    /**
+     * Leave the waitlist of a ride.
+     */
+    public void leaveWaitlist(String rideId, String studentUsername) {
+        Query query = new Query(Criteria.where("id").is(rideId).and("waitlist").is(studentUsername));
+        if (mongoTemplate.updateFirst(query, new Update().pull("waitlist", studentUsername), Ride.class).getModifiedCount() == 0) {
+            throw new ResourceNotFoundException("You are not on the waitlist for this ride");
+        }
+        logger.info("Student {} left the waitlist of ride {}", studentUsername, rideId);
+    }
 
-        return savedRide;
+    /**
+     * The student's 1-based position on the ride's waitlist, or 0 when they hold a seat on it.
+     */
+    public int getWaitlistPosition(String rideId, String studentUsername) {
+        Query query = new Query(Criteria.where("id").is(rideId));
+        query.fields().include("waitlist").include("passengers");
+        Ride ride = mongoTemplate.findOne(query, Ride.class);
+        if (ride == null) {
+            throw new ResourceNotFoundException("Ride not found");
+        }
+        if (ride.getPassengers().contains(studentUsername)) {
+            return 0;
+        }
+        int index = ride.getWaitlist() == null ? -1 : ride.getWaitlist().indexOf(studentUsername);
+        if (index < 0) {
+            throw new ResourceNotFoundException("You are not on the waitlist for this ride");
+        }
+        return index + 1;
+    }
+
+    // A hold lapsed: its seat may belong to a waitlisted student. Async, so the promotion's stripe
+    // wait and Mongo round trips run on the task executor rather than the timing-wheel thread
+    @Async
+    @EventListener
+    public void onSeatReleased(SeatReleasedEvent event) {
+        promoteWaitlisted(event.rideId());
+    }
+
+    /**
+     * Give free seats to the head of the ride's waitlist, one student at a time. Runs on the
+     * ride's admission stripe, so bookings cannot slip in between a seat being freed and the
+     * waitlist being served; promoted students are notified afterwards.
+     */
+    private void promoteWaitlisted(String rideId) {
+        List<Ride> promotions;
+        try {
+            promotions = bookingAdmission.exclusive(rideId, () -> {
+                List<Ride> promoted = new ArrayList<>();
+                Ride before;
+                while (promoted.size() < maxWaitlistSize && (before = promoteHead(rideId)) != null) {
+                    promoted.add(before);
+                }
+                return promoted;
+            });
+        } catch (ConflictException e) {
+            logger.debug("Waitlist of ride {} not served: {}", rideId, e.getMessage());
+            return;
+        }
+        for (Ride before : promotions) {
+            String username = before.getWaitlist().get(0);
+            // Reflect the promotion on the pre-update copy rather than reading the ride again
+            before.getWaitlist().remove(0);
+            before.getPassengers().add(username);
+            before.setAvailableSeats(before.getAvailableSeats() - 1);
+            bookingService.recordBooked(rideId, List.of(username));
+            seatHolds.release(rideId, username);
+            upcomingIndex.index(before);
+            searchCache.invalidate();
+            logger.info("Student {} promoted from the waitlist of ride {}", username, rideId);
+            notificationService.notifyWaitlistPromoted(before, username);
+        }
+    }
+
+    // Move the first waitlisted student into passengers if a seat is free; returns the ride as it was before, or null
+    private Ride promoteHead(String rideId) {
+        int held = seatHolds.held(rideId);
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("id").is(rideId),
+                Criteria.where("status").is(RideStatus.SCHEDULED),
+                Criteria.where("departureTime").gte(LocalDateTime.now()),
+                Criteria.where("waitlist.0").exists(true),
+                Criteria.where("availableSeats").gt(held),
+                new Criteria().orOperator(
+                        Criteria.where("maxPassengers").lte(0),
+                        Criteria.expr(ComparisonOperators.Lt.valueOf(
+                                        ArithmeticOperators.Add.valueOf(ArrayOperators.Size.lengthOfArray("passengers")).add(held))
+                                .lessThan("maxPassengers")))));
+        AggregationOperation promote = context -> new Document("$set", new Document()
+                .append("passengers", new Document("$setUnion", List.of("$passengers", new Document("$slice", List.of("$waitlist", 1)))))
+                .append("waitlist", new Document("$slice", List.of("$waitlist", 1,
+                        new Document("$max", List.of(new Document("$size", "$waitlist"), 1)))))
+                .append("availableSeats", new Document("$subtract", List.of("$availableSeats", 1))));
+        return mongoTemplate.findAndModify(query, AggregationUpdate.from(List.of(promote)),
+                FindAndModifyOptions.options().returnNew(false), Ride.class);
     }
 
     /**
      * Get rides associated with a user (as driver or passenger)
      */
-    public Page<Ride> getUserRides(String username, boolean asDriver, Pageable pageable) {
+    public Slice<RideSummary> getUserRides(String username, boolean asDriver, Pageable pageable, boolean withTotal) {
         logger.debug("Fetching rides for user {} as {}", username, asDriver ? "driver" : "passenger");
-        
-        Query query = new Query().with(pageable);
-        
-        if (asDriver) {
-            query.addCriteria(Criteria.where("driverUsername").is(username));
-        } else {
-            query.addCriteria(Criteria.where("passengers").in(username));
-        }
-        
+        return getUserRidesWithStatus(username, asDriver, null, pageable, withTotal);
+    }
+
+    // Get rides for a user (driver or passenger) with status filtering
+    public Slice<RideSummary> getUserRidesWithStatus(String username, boolean asDriver, List<RideStatus> statuses, Pageable pageable,
+                                             boolean withTotal) {
+        logger.debug("Fetching rides for user {} as {} with statuses {}", username, asDriver ? "driver" : "passenger", statuses);
         // Sort by departure time descending by default
         if (pageable.getSort().isUnsorted()) {
-            query.with(Sort.by(Sort.Direction.DESC, "departureTime"));
+            pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(Sort.Direction.DESC, "departureTime"));
         }
-        
-        long total = mongoTemplate.count(query, Ride.class);
-        List<Ride> rides = mongoTemplate.find(query, Ride.class);
-        
-        return new PageImpl<>(rides, pageable, total);
+        if (!asDriver) {
+            return findBookedPage(username, statuses, pageable, withTotal);
+        }
+        Criteria criteria = Criteria.where("driverUsername").is(username);
+        if (statuses != null && !statuses.isEmpty()) {
+            criteria = criteria.and("status").in(statuses);
+        }
+        return findPage("user-rides", criteria, pageable, withTotal);
     }
 
-    // Get rides for a user (driver or passenger) with status filtering
-    public Page<Ride> getUserRidesWithStatus(String username, boolean asDriver, List<RideStatus> statuses, Pageable pageable) {
-        logger.debug("Fetching rides for user {} as {} with statuses {}", username, asDriver ? "driver" : "passenger", statuses);
-        Query query = new Query().with(pageable);
-        if (asDriver) {
-            query.addCriteria(Criteria.where("driverUsername").is(username));
+    /**
+     * One page of the rides a student has a confirmed booking on, in one aggregation over the
+     * bookings ledger: the student's bookings come from the studentId_status_rideId index and
+     * each one is joined to its ride's summary by _id, so no list of ride ids is built in memory.
+     */
+    private Slice<RideSummary> findBookedPage(String studentId, List<RideStatus> statuses, Pageable pageable, boolean withTotal) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        // Raw stages on the collection name: values are given as stored, and the sort applies to the joined ride
+        Document rideMatch = new Document("$expr", new Document("$eq", List.of("$_id", "$$rideId")));
+        if (statuses != null && !statuses.isEmpty()) {
+            rideMatch.append("status", new Document("$in", statuses.stream().map(RideStatus::name).toList()));
+        }
+        Document summaryFields = new Document();
+        for (String field : RideSummary.FIELDS) {
+            summaryFields.append("id".equals(field) ? "_id" : field, 1);
+        }
+        Document sort = new Document();
+        for (Sort.Order order : pageable.getSort()) {
+            sort.append("id".equals(order.getProperty()) ? "_id" : order.getProperty(), order.isAscending() ? 1 : -1);
+        }
+        sort.putIfAbsent("_id", 1);
+
+        List<Document> pipeline = new ArrayList<>(List.of(
+                new Document("$match", new Document("studentId", studentId).append("status", BookingStatus.CONFIRMED.name())),
+                new Document("$lookup", new Document("from", mongoTemplate.getCollectionName(Ride.class))
+                        .append("let", new Document("rideId", new Document("$convert", new Document("input", "$rideId")
+                                .append("to", "objectId").append("onError", null))))
+                        .append("pipeline", List.of(new Document("$match", rideMatch), new Document("$project", summaryFields)))
+                        .append("as", "ride")),
+                new Document("$unwind", "$ride"),
+                new Document("$replaceRoot", new Document("newRoot", "$ride")),
+                new Document("$sort", sort)));
+        Document skip = new Document("$skip", pageable.getOffset());
+        if (withTotal) {
+            pipeline.add(new Document("$facet", new Document("content", List.of(skip, new Document("$limit", pageable.getPageSize())))
+                    .append("total", List.of(new Document("$count", "total")))));
         } else {
-            query.addCriteria(Criteria.where("passengers").in(username));
+            pipeline.add(skip);
+            pipeline.add(new Document("$limit", pageable.getPageSize() + 1));
         }
-        if (statuses != null && !statuses.isEmpty()) {
-            query.addCriteria(Criteria.where("status").in(statuses));
+
+        List<RideSummary> rides = new ArrayList<>();
+        long total = 0;
+        for (Document document : mongoTemplate.getCollection(mongoTemplate.getCollectionName(Booking.class))
+                .aggregate(pipeline).allowDiskUse(true)) {
+            if (withTotal) {
+                for (Document ride : document.getList("content", Document.class)) {
+                    rides.add(mongoTemplate.getConverter().read(RideSummary.class, ride));
+                }
+                List<Document> totals = document.getList("total", Document.class);
+                total = totals.isEmpty() ? 0 : ((Number) totals.get(0).get("total")).longValue();
+            } else {
+                rides.add(mongoTemplate.getConverter().read(RideSummary.class, document));
+            }
         }
-        if (pageable.getSort().isUnsorted()) {
-            query.with(Sort.by(Sort.Direction.DESC, "departureTime"));
+        Slice<RideSummary> slice;
+        if (withTotal) {
+            slice = new PageImpl<>(rides, pageable, total);
+        } else {
+            boolean hasNext = rides.size() > pageable.getPageSize();
+            slice = new SliceImpl<>(hasNext ? rides.subList(0, pageable.getPageSize()) : rides, pageable, hasNext);
         }
-        long total = mongoTemplate.count(query, Ride.class);
-        List<Ride> rides = mongoTemplate.find(query, Ride.class);
-        return new PageImpl<>(rides, pageable, total);
+        sample.stop(meterRegistry.timer(QUERY_TIMER, "path", "user-rides", "mode", "booking-lookup"));
+        return slice;
+    }
+
+    /**
+     * Fetch one page of rides matching the criteria in a single round trip.
+     * With a total, page and count run as one $facet aggregation; without one, a plain find
+     * reads one extra ride to tell whether another page exists. Setting
+     * ride.query.single-round-trip=false restores the separate find and count queries,
+     * which the rides.list.query timer records under mode=find-count for comparison.
+     */
+    private Slice<RideSummary> findPage(String path, Criteria criteria, Pageable pageable, boolean withTotal) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Slice<RideSummary> slice;
+        String mode;
+        if (!withTotal) {
+            Query query = new Query(criteria).with(pageable.getSort())
+                    .skip(pageable.getOffset())
+                    .limit(pageable.getPageSize() + 1);
+            List<RideSummary> rides = findSummaries(query);
+            boolean hasNext = rides.size() > pageable.getPageSize();
+            slice = new SliceImpl<>(hasNext ? rides.subList(0, pageable.getPageSize()) : rides, pageable, hasNext);
+            mode = "page-only";
+        } else if (singleRoundTrip) {
+            FacetResult result = facet(criteria, pageable.getSort(),
+                    Aggregation.skip(pageable.getOffset()), Aggregation.limit(pageable.getPageSize()),
+                    Aggregation.project(RideSummary.FIELDS));
+            slice = new PageImpl<>(result.content(), pageable, result.total());
+            mode = "facet";
+        } else {
+            Query query = new Query(criteria).with(pageable);
+            List<RideSummary> rides = findSummaries(query);
+            long total = mongoTemplate.count(Query.of(query).skip(-1).limit(-1), Ride.class);
+            slice = new PageImpl<>(rides, pageable, total);
+            mode = "find-count";
+        }
+        sample.stop(meterRegistry.timer(QUERY_TIMER, "path", path, "mode", mode));
+        return slice;
+    }
+
+    // Match and sort once (so an index can serve both), then run the page stages and a count side by side in a $facet
+    private FacetResult facet(Criteria criteria, Sort sort, AggregationOperation... pageStages) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(Aggregation.match(criteria));
+        if (sort.isSorted()) {
+            stages.add(Aggregation.sort(sort));
+        }
+        stages.add(Aggregation.facet(pageStages).as("content")
+                .and(Aggregation.count().as("total")).as("total"));
+        Aggregation aggregation = Aggregation.newAggregation(stages)
+                .withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).build());
+        Document result = mongoTemplate.aggregate(aggregation, Ride.class, Document.class).getUniqueMappedResult();
+        if (result == null) {
+            return new FacetResult(List.of(), 0);
+        }
+        List<RideSummary> rides = new ArrayList<>();
+        for (Document document : result.getList("content", Document.class)) {
+            rides.add(mongoTemplate.getConverter().read(RideSummary.class, document));
+        }
+        List<Document> totals = result.getList("total", Document.class);
+        long total = totals.isEmpty() ? 0 : ((Number) totals.get(0).get("total")).longValue();
+        return new FacetResult(rides, total);
+    }
+
+    private record FacetResult(List<RideSummary> content, long total) {
+    }
+
+    // Find rides as summaries, fetching only the summary fields from Mongo
+    private List<RideSummary> findSummaries(Query query) {
+        query.fields().include(RideSummary.FIELDS);
+        return mongoTemplate.query(Ride.class).as(RideSummary.class).matching(query).all();
     }
 
     private boolean isValidStatusTransition(RideStatus currentStatus, RideStatus newStatus) {
@@ -330,19 +1256,24 @@ public class RideService {    private static final Logger logger = LoggerFactory
 // Driver removes a specific passenger from their ride
     public Ride removePassengerByDriver(String rideId, String driverUsername, String passengerUsername) {
         logger.debug("Driver {} requests to remove passenger {} from ride {}", driverUsername, passengerUsername, rideId);
-        Ride ride = rideRepository.findById(rideId)
-            .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
-        if (!ride.getDriverUsername().equals(driverUsername)) {
-            throw new UnauthorizedException("You are not the driver of this ride");
-        }
-        if (!ride.getPassengers().contains(passengerUsername)) {
+        Ride updatedRide = releaseSeat(Criteria.where("id").is(rideId)
+                .and("driverUsername").is(driverUsername)
+                .and("passengers").is(passengerUsername), passengerUsername);
+        if (updatedRide == null) {
+            Ride ride = rideRepository.findById(rideId)
+                .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+            if (!driverUsername.equals(ride.getDriverUsername())) {
+                throw new UnauthorizedException("You are not the driver of this ride");
+            }
             throw new BadRequestException("Passenger is not booked on this ride");
         }
-        ride.getPassengers().remove(passengerUsername);
-        ride.setAvailableSeats(ride.getAvailableSeats() + 1);
-        Ride updatedRide = rideRepository.save(ride);
+        bookingService.recordReleased(rideId, passengerUsername, BookingStatus.REMOVED);
+        upcomingIndex.index(updatedRide);
+        bookingAdmission.reopen(rideId);
+        searchCache.invalidate();
         notificationService.notifyRideStatusChange(updatedRide);
         logger.info("Passenger {} removed from ride {} by driver {}", passengerUsername, rideId, driverUsername);
+        promoteWaitlisted(rideId);
         return updatedRide;
     }
 
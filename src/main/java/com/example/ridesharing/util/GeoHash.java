@@ -0,0 +1,99 @@
+package com.example.ridesharing.util;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Geohash encoding plus helpers for enumerating the cells around a point.
+ */
+public final class GeoHash {
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    public static final double METERS_PER_DEGREE_LAT = 111_320.0;
+
+    private GeoHash() {
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90, minLng = -180, maxLng = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLng + maxLng) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLng = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+            if (++bit == 5) {
+                hash.append(BASE32.charAt(ch));
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    // Height of a cell in degrees of latitude
+    public static double cellHeight(int precision) {
+        int latBits = (precision * 5) / 2;
+        return 180.0 / (1L << latBits);
+    }
+
+    // Width of a cell in degrees of longitude
+    public static double cellWidth(int precision) {
+        int lngBits = precision * 5 - (precision * 5) / 2;
+        return 360.0 / (1L << lngBits);
+    }
+
+    /**
+     * All cells of the given precision that intersect the bounding box of a circle around the point.
+     */
+    public static Set<String> cellsWithin(double latitude, double longitude, double radiusMeters, int precision) {
+        double latDelta = radiusMeters / METERS_PER_DEGREE_LAT;
+        double lngDelta = radiusMeters / (METERS_PER_DEGREE_LAT * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+        double height = cellHeight(precision);
+        double width = cellWidth(precision);
+
+        long firstRow = (long) Math.floor((Math.max(-90, latitude - latDelta) + 90) / height);
+        long lastRow = (long) Math.floor((Math.min(90 - 1e-9, latitude + latDelta) + 90) / height);
+        long firstColumn = (long) Math.floor((longitude - lngDelta + 180) / width);
+        long lastColumn = (long) Math.floor((longitude + lngDelta + 180) / width);
+
+        Set<String> cells = new LinkedHashSet<>();
+        for (long row = firstRow; row <= lastRow; row++) {
+            double cellLat = -90 + (row + 0.5) * height;
+            for (long column = firstColumn; column <= lastColumn; column++) {
+                // Wrap around the antimeridian
+                double cellLng = ((-180 + (column + 0.5) * width) + 540) % 360 - 180;
+                cells.add(encode(cellLat, cellLng, precision));
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Approximate distance in metres between two nearby points (equirectangular projection).
+     */
+    public static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double x = Math.toRadians(lng2 - lng1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * METERS_PER_DEGREE_LAT * 180 / Math.PI;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.ridesharing.util;
+
+import com.example.ridesharing.dto.RideSummary;
+import com.example.ridesharing.exception.BadRequestException;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Opaque keyset pagination cursor for ride search.
+ * Encodes the sort field, direction, the sort key of the last ride on a page and its id.
+ */
+public final class SearchCursor {
+
+    public static final List<String> SORT_KEYS = List.of("departureTime", "price", "availableSeats");
+
+    private final String sortBy;
+    private final boolean descending;
+    private final String sortValue;
+    private final String rideId;
+
+    private SearchCursor(String sortBy, boolean descending, String sortValue, String rideId) {
+        this.sortBy = sortBy;
+        this.descending = descending;
+        this.sortValue = sortValue;
+        this.rideId = rideId;
+    }
+
+    public static SearchCursor of(RideSummary ride, String sortBy, boolean descending) {
+        String value;
+        switch (sortBy) {
+            case "departureTime":
+                value = ride.getDepartureTime().toString();
+                break;
+            case "price":
+                value = Double.toString(ride.getPrice());
+                break;
+            case "availableSeats":
+                value = Integer.toString(ride.getAvailableSeats());
+                break;
+            default:
+                throw new BadRequestException("Unsupported cursor sort field: " + sortBy);
+        }
+        return new SearchCursor(sortBy, descending, value, ride.getId());
+    }
+
+    public static SearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\n", -1);
+            if (parts.length != 4 || !SORT_KEYS.contains(parts[0])) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            SearchCursor cursor = new SearchCursor(parts[0], "D".equals(parts[1]), parts[2], parts[3]);
+            cursor.typedSortValue(); // validate the value parses for its field
+            return cursor;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    public String encode() {
+        String raw = sortBy + "\n" + (descending ? "D" : "A") + "\n" + sortValue + "\n" + rideId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Criteria selecting rides that sort strictly after this cursor: a later sort key,
+     * or the same sort key with a later id.
+     */
+    public Criteria toCriteria() {
+        Object value = typedSortValue();
+        Criteria beyondKey = descending ? Criteria.where(sortBy).lt(value) : Criteria.where(sortBy).gt(value);
+        Criteria beyondId = descending ? Criteria.where("id").lt(rideId) : Criteria.where("id").gt(rideId);
+        return new Criteria().orOperator(
+                beyondKey,
+                new Criteria().andOperator(Criteria.where(sortBy).is(value), beyondId)
+        );
+    }
+
+    public String getSortBy() {
+        return sortBy;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public String getRideId() {
+        return rideId;
+    }
+
+    private Object typedSortValue() {
+        switch (sortBy) {
+            case "departureTime":
+                return LocalDateTime.parse(sortValue);
+            case "price":
+                return Double.parseDouble(sortValue);
+            default:
+                return Integer.parseInt(sortValue);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.ridesharing.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel for many short timeouts.
+ *
+ * Time is split into ticks; each item goes into the slot of the tick it expires on, modulo
+ * the wheel size. A single thread wakes once per tick and only looks at that tick's slot,
+ * so the cost of expiry is proportional to what expires rather than to everything pending.
+ * Items due in a later revolution of the wheel are put back. Scheduling and advancing the
+ * current tick share a short lock, so an item can never be placed in a slot that has already
+ * been drained for this revolution. Items cannot be cancelled; the expiry callback should
+ * ignore items that no longer apply.
+ */
+public final class TimingWheel<T> {
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+
+    private final long tickMillis;
+    private final Queue<Entry<T>>[] slots;
+    private final Consumer<T> onExpire;
+    private final Thread worker;
+    private final Object tickLock = new Object();
+    private volatile long currentTick;
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(String name, long tickMillis, int wheelSize, Consumer<T> onExpire) {
+        this.tickMillis = tickMillis;
+        this.onExpire = onExpire;
+        this.slots = new Queue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Call onExpire with the item at (or up to one tick after) the given epoch millis.
+     */
+    public void schedule(T item, long deadlineMillis) {
+        long deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        // Under the tick lock: the slot chosen here is drained only after this add is visible
+        synchronized (tickLock) {
+            long tick = Math.max(deadlineTick, currentTick + 1);
+            slots[(int) Math.floorMod(tick, (long) slots.length)].add(new Entry<>(item, tick));
+        }
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            long next = currentTick + 1;
+            long sleep = next * tickMillis - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+            synchronized (tickLock) {
+                currentTick = next;
+            }
+            expire(next);
+        }
+    }
+
+    private void expire(long tick) {
+        Queue<Entry<T>> slot = slots[(int) Math.floorMod(tick, (long) slots.length)];
+        List<Entry<T>> later = new ArrayList<>();
+        Entry<T> entry;
+        while ((entry = slot.poll()) != null) {
+            if (entry.tick > tick) {
+                later.add(entry);
+                continue;
+            }
+            try {
+                onExpire.accept(entry.item);
+            } catch (RuntimeException e) {
+                logger.warn("Timeout callback failed: {}", e.getMessage());
+            }
+        }
+        slot.addAll(later);
+    }
+
+    private record Entry<T>(T item, long tick) {
+    }
+}
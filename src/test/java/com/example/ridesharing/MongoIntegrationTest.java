@@ -0,0 +1,50 @@
+package com.example.ridesharing;
+
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Base class for tests that run the application against an embedded MongoDB.
+ *
+ * One mongod is started for the whole test run and shared by every test class. When it
+ * cannot be started (for example because the MongoDB binary cannot be downloaded), the
+ * tests are skipped rather than failed.
+ */
+@SpringBootTest
+public abstract class MongoIntegrationTest {
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private static RuntimeException startFailure;
+
+    @BeforeAll
+    static void requireMongo() {
+        Assumptions.assumeTrue(startMongo(), () -> "Embedded MongoDB is not available: " + startFailure.getMessage());
+    }
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> {
+            ServerAddress address = mongod.current().getServerAddress();
+            return "mongodb://" + address.getHost() + ":" + address.getPort() + "/ridesharing-test";
+        });
+    }
+
+    private static synchronized boolean startMongo() {
+        if (mongod == null && startFailure == null) {
+            try {
+                mongod = Mongod.instance().start(Version.Main.V7_0);
+                Runtime.getRuntime().addShutdownHook(new Thread(mongod::close));
+            } catch (RuntimeException e) {
+                startFailure = e;
+            }
+        }
+        return mongod != null;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.ridesharing.concurrency;
+
+import com.example.ridesharing.exception.RideFullException;
+import com.example.ridesharing.model.Ride;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookingAdmissionTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BookingAdmission admission = new BookingAdmission(meterRegistry, true, 4, 100, 60_000);
+
+    @AfterEach
+    void shutdown() {
+        admission.shutdown();
+    }
+
+    @Test
+    void fullRideIsRefusedWithoutRunningTheClaim() {
+        admission.book("ride-1", "alice", false, () -> ride(0), ride -> { });
+
+        AtomicInteger claims = new AtomicInteger();
+        assertThrows(RideFullException.class, () -> admission.book("ride-1", "bob", false, () -> {
+            claims.incrementAndGet();
+            return ride(0);
+        }, ride -> { }));
+        assertEquals(0, claims.get());
+        assertEquals(1, meterRegistry.counter("rides.booking.admission", "outcome", "rejected-full").count());
+    }
+
+    @Test
+    void claimReportingFullMarksTheRideFull() {
+        assertThrows(RideFullException.class, () -> admission.book("ride-2", "alice", false, () -> {
+            throw new RideFullException("No seats available");
+        }, ride -> { }));
+
+        assertThrows(RideFullException.class, () -> admission.book("ride-2", "bob", false, () -> ride(1), ride -> { }));
+        // Reopening after a seat is released lets bookings through again
+        admission.reopen("ride-2");
+        admission.book("ride-2", "bob", false, () -> ride(1), ride -> { });
+    }
+
+    @Test
+    void confirmingAHoldIsLetThroughOnAFullRide() {
+        admission.book("ride-3", "alice", false, () -> ride(0), ride -> { });
+
+        Ride booked = admission.book("ride-3", "bob", true, () -> ride(0), ride -> { });
+        assertEquals(0, booked.getAvailableSeats());
+    }
+
+    @Test
+    void claimsOnOneRideRunOneAtATimeInArrivalOrder() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String user = "user" + i;
+            boolean first = i == 0;
+            Thread thread = new Thread(() -> admission.book("ride-4", user, false, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    if (first) {
+                        release.await(10, TimeUnit.SECONDS);
+                    }
+                    order.add(user);
+                    return ride(100);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }, ride -> { }));
+            thread.start();
+            // Wait until this attempt is queued on the stripe before sending the next one
+            awaitWaiting(thread);
+            threads.add(thread);
+        }
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        assertEquals(1, maxRunning.get());
+        assertEquals(10, order.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("user" + i, order.get(i));
+        }
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(thread.getState() == Thread.State.WAITING, "booking attempt was not queued");
+    }
+
+    private static Ride ride(int availableSeats) {
+        Ride ride = new Ride();
+        ride.setAvailableSeats(availableSeats);
+        ride.setMaxPassengers(100);
+        return ride;
+    }
+}
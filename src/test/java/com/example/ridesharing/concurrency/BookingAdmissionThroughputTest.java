@@ -0,0 +1,121 @@
+package com.example.ridesharing.concurrency;
+
+import com.example.ridesharing.exception.ConflictException;
+import com.example.ridesharing.exception.RideFullException;
+import com.example.ridesharing.model.Ride;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Flash-crowd throughput with and without admission stripes.
+ *
+ * The seat claim stands in for the conditional findAndModify: a fixed round trip, and writes
+ * to the same ride document applied one at a time, as Mongo does for a single document.
+ * Without admission every attempt pays that write; with it, attempts after the ride filled up
+ * are refused from memory.
+ */
+class BookingAdmissionThroughputTest {
+    private static final Logger logger = LoggerFactory.getLogger(BookingAdmissionThroughputTest.class);
+
+    private static final int THREADS = 200;
+    private static final int ATTEMPTS = 2000;
+    private static final int SEATS = 4;
+    private static final long ROUND_TRIP_MILLIS = 2;
+
+    @Test
+    void admissionRefusesTheFlashCrowdWithoutTouchingTheStore() throws Exception {
+        Run direct = run(false);
+        Run admitted = run(true);
+        logger.info("Flash crowd of {} attempts on a {}-seat ride from {} threads: direct {} ms ({} attempts/s, {} store writes), "
+                        + "admission {} ms ({} attempts/s, {} store writes)",
+                ATTEMPTS, SEATS, THREADS, direct.millis, direct.perSecond(), direct.writes,
+                admitted.millis, admitted.perSecond(), admitted.writes);
+
+        assertEquals(SEATS, direct.booked);
+        assertEquals(SEATS, admitted.booked);
+        assertEquals(ATTEMPTS, direct.writes);
+        // Only the winners, and attempts already queued before the ride was known to be full, reach the store
+        assertTrue(admitted.writes < ATTEMPTS / 10, "admission let " + admitted.writes + " attempts through");
+        assertTrue(admitted.millis < direct.millis, "admission was not faster: " + admitted.millis + " ms vs " + direct.millis + " ms");
+    }
+
+    private Run run(boolean enabled) throws Exception {
+        BookingAdmission admission = new BookingAdmission(new SimpleMeterRegistry(), enabled, 16, 10_000, 60_000);
+        SimulatedRide store = new SimulatedRide(SEATS);
+        AtomicInteger booked = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> attempts = new ArrayList<>();
+            for (int i = 0; i < ATTEMPTS; i++) {
+                String user = "student" + i;
+                attempts.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        admission.book("ride", user, false, store::claim, ride -> { });
+                        booked.incrementAndGet();
+                    } catch (ConflictException e) {
+                        // Full, or refused by admission
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> attempt : attempts) {
+                attempt.get(60, TimeUnit.SECONDS);
+            }
+            return new Run(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), booked.get(), store.writes.get());
+        } finally {
+            executor.shutdownNow();
+            admission.shutdown();
+        }
+    }
+
+    private record Run(long millis, int booked, int writes) {
+        long perSecond() {
+            return ATTEMPTS * 1000L / Math.max(1, millis);
+        }
+    }
+
+    // One ride document: each conditional write takes a round trip and holds the document while it applies
+    private static final class SimulatedRide {
+        private int availableSeats;
+        private final AtomicInteger writes = new AtomicInteger();
+
+        SimulatedRide(int seats) {
+            this.availableSeats = seats;
+        }
+
+        synchronized Ride claim() {
+            writes.incrementAndGet();
+            try {
+                Thread.sleep(ROUND_TRIP_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            if (availableSeats == 0) {
+                throw new RideFullException("No seats available");
+            }
+            Ride ride = new Ride();
+            ride.setAvailableSeats(--availableSeats);
+            ride.setMaxPassengers(SEATS);
+            return ride;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.ridesharing.dto;
+
+import com.example.ridesharing.enums.RideStatus;
+import com.example.ridesharing.model.Ride;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.mongodb.MongoClientSettings;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
+import org.springframework.data.mongodb.core.geo.GeoJsonModule;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Before/after measurement for list endpoints: a full Ride document against the RideSummary
+ * projection, in BSON read from Mongo, JSON written to the client, and decode time.
+ */
+class RideSummaryPayloadTest {
+    private static final Logger logger = LoggerFactory.getLogger(RideSummaryPayloadTest.class);
+
+    private static final int PAGE = 50;
+    private static final int ROUNDS = 200;
+
+    private final MappingMongoConverter converter = converter();
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().addModule(new GeoJsonModule()).build();
+
+    @Test
+    void summaryPageIsSmallerAndCheaperToDecodeThanFullRides() throws Exception {
+        Ride ride = typicalRide();
+        Document full = new Document();
+        converter.write(ride, full);
+        Document projected = new Document();
+        for (String field : RideSummary.FIELDS) {
+            String key = "id".equals(field) ? "_id" : field;
+            if (full.containsKey(key)) {
+                projected.put(key, full.get(key));
+            }
+        }
+
+        int fullBson = bsonSize(full);
+        int summaryBson = bsonSize(projected);
+        int fullJson = objectMapper.writeValueAsBytes(converter.read(Ride.class, full)).length;
+        RideSummary summary = converter.read(RideSummary.class, projected);
+        int summaryJson = objectMapper.writeValueAsBytes(summary).length;
+
+        // Warm up both paths before timing a page worth of decodes per round
+        decode(Ride.class, full, ROUNDS);
+        decode(RideSummary.class, projected, ROUNDS);
+        long fullNanos = decode(Ride.class, full, ROUNDS);
+        long summaryNanos = decode(RideSummary.class, projected, ROUNDS);
+
+        logger.info("Page of {} rides: BSON {} -> {} bytes, JSON {} -> {} bytes, decode {} -> {} us per page",
+                PAGE, fullBson * PAGE, summaryBson * PAGE, fullJson * PAGE, summaryJson * PAGE,
+                fullNanos / ROUNDS / 1000, summaryNanos / ROUNDS / 1000);
+
+        assertEquals(ride.getId(), summary.getId());
+        assertEquals(ride.getDepartureTime(), summary.getDepartureTime());
+        assertTrue(summaryBson * 2 < fullBson, "summary BSON " + summaryBson + " vs full " + fullBson);
+        assertTrue(summaryJson * 2 < fullJson, "summary JSON " + summaryJson + " vs full " + fullJson);
+    }
+
+    private long decode(Class<?> type, Document document, int rounds) {
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < PAGE; i++) {
+                converter.read(type, document);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static int bsonSize(Document document) {
+        return new RawBsonDocument(document, new DocumentCodec(MongoClientSettings.getDefaultCodecRegistry())).getByteBuffer().remaining();
+    }
+
+    // A ride as drivers fill it in: a recurring carpool with notes, a planned route, passengers and a waitlist
+    private static Ride typicalRide() {
+        Ride ride = new Ride();
+        ride.setId(new ObjectId().toHexString());
+        ride.setDriverUsername("driver.jane");
+        ride.setOrigin("North Campus, Engineering Building");
+        ride.setDestination("Downtown Transit Center");
+        ride.setDepartureTime(LocalDateTime.now().plusDays(1).withNano(0));
+        ride.setAvailableSeats(1);
+        ride.setMaxPassengers(4);
+        ride.setPrice(6.5);
+        ride.setStatus(RideStatus.SCHEDULED);
+        ride.setCampusLocation("North Campus");
+        ride.setBuildingName("Engineering Building");
+        ride.setScheduleType("RECURRING");
+        ride.setRecurringDays(new String[] {"MONDAY", "WEDNESDAY", "FRIDAY"});
+        ride.setVehicleType("Sedan");
+        ride.setVehicleNumber("ABC-1234");
+        ride.setCarpool(true);
+        ride.setPreferredDepartments(new String[] {"Computer Science", "Electrical Engineering", "Mathematics"});
+        ride.setNotes("Meeting at the east entrance of the Engineering Building. Please be on time, I leave five minutes "
+                + "after the departure time. Small bags only, the trunk is full of lab equipment on Mondays. "
+                + "Happy to drop off anywhere along the main avenue on the way downtown.");
+        ride.setPickupLocation(new GeoJsonPoint(-83.7382, 42.2936));
+        ride.setDropoffLocation(new GeoJsonPoint(-83.7480, 42.2808));
+        List<Point> route = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            route.add(new Point(-83.7382 - i * 0.00025, 42.2936 - i * 0.00032));
+        }
+        ride.setRoute(new GeoJsonLineString(route));
+        Set<String> passengers = new HashSet<>(List.of("student.amir", "student.bea", "student.chen"));
+        ride.setPassengers(passengers);
+        List<String> waitlist = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            waitlist.add("student.waiting" + i);
+        }
+        ride.setWaitlist(waitlist);
+        ride.setVersion(7L);
+        return ride;
+    }
+
+    private static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
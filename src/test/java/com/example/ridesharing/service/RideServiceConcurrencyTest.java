@@ -0,0 +1,129 @@
+package com.example.ridesharing.service;
+
+import com.example.ridesharing.MongoIntegrationTest;
+import com.example.ridesharing.enums.RideStatus;
+import com.example.ridesharing.exception.ConflictException;
+import com.example.ridesharing.exception.RideFullException;
+import com.example.ridesharing.model.Booking;
+import com.example.ridesharing.model.Ride;
+import com.example.ridesharing.repository.RideRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RideServiceConcurrencyTest extends MongoIntegrationTest {
+    static final int THREADS = 500;
+    static final int SEATS = 4;
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void concurrentBookingsThroughAdmissionNeverOversellARide() throws Exception {
+        String rideId = createRide(rideService, SEATS);
+        assertNoOversell(rideRepository, mongoTemplate, rideId, bookConcurrently(rideService, rideId));
+    }
+
+    @Test
+    void bookingAFullRideIsRefusedByAdmission() {
+        String rideId = createRide(1);
+        rideService.bookRide(rideId, "first");
+        double rejectedBefore = meterRegistry.counter("rides.booking.admission", "outcome", "rejected-full").count();
+
+        assertThrows(RideFullException.class, () -> rideService.bookRide(rideId, "second"));
+        assertThrows(RideFullException.class, () -> rideService.bookRide(rideId, "third"));
+
+        assertEquals(rejectedBefore + 2, meterRegistry.counter("rides.booking.admission", "outcome", "rejected-full").count());
+        Ride saved = rideRepository.findById(rideId).orElseThrow();
+        assertEquals(Set.of("first"), saved.getPassengers());
+        assertEquals(0, saved.getAvailableSeats());
+    }
+
+    private String createRide(int seats) {
+        return createRide(rideService, seats);
+    }
+
+    // THREADS students released at once on one ride; returns {booked, rejected}
+    static int[] bookConcurrently(RideService rideService, String rideId) throws Exception {
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> attempts = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                String student = "student" + i;
+                attempts.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        rideService.bookRide(rideId, student);
+                        booked.incrementAndGet();
+                    } catch (ConflictException e) {
+                        // Ride full, or turned away by the admission queue
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> attempt : attempts) {
+                attempt.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new int[] {booked.get(), rejected.get()};
+    }
+
+    static void assertNoOversell(RideRepository rideRepository, MongoTemplate mongoTemplate,
+                                 String rideId, int[] outcome) {
+        assertEquals(SEATS, outcome[0]);
+        assertEquals(THREADS - SEATS, outcome[1]);
+
+        Ride saved = rideRepository.findById(rideId).orElseThrow();
+        assertEquals(SEATS, saved.getPassengers().size());
+        assertEquals(0, saved.getAvailableSeats());
+        assertEquals(SEATS, mongoTemplate.count(new Query(Criteria.where("rideId").is(rideId)), Booking.class));
+        assertTrue(saved.getPassengers().stream().allMatch(passenger -> passenger.startsWith("student")));
+    }
+
+    static String createRide(RideService rideService, int seats) {
+        Ride ride = new Ride();
+        ride.setDriverUsername("driver");
+        ride.setOrigin("North Campus");
+        ride.setDestination("Downtown");
+        ride.setDepartureTime(LocalDateTime.now().plusDays(1));
+        ride.setAvailableSeats(seats);
+        ride.setMaxPassengers(seats);
+        ride.setPrice(5);
+        ride.setStatus(RideStatus.SCHEDULED);
+        return rideService.createRide(ride).getId();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.ridesharing.service;
+
+import com.example.ridesharing.MongoIntegrationTest;
+import com.example.ridesharing.dto.RideSummary;
+import com.example.ridesharing.enums.RideStatus;
+import com.example.ridesharing.model.Ride;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RideSummaryProjectionTest extends MongoIntegrationTest {
+    @Autowired
+    private RideService rideService;
+
+    @Test
+    void searchReturnsEverySummaryField() {
+        Ride ride = rideService.createRide(ride("search-" + UUID.randomUUID()));
+
+        // Upcoming SCHEDULED search, served through the upcoming departures index when it covers the window
+        Slice<RideSummary> upcoming = rideService.searchRides(ride.getOrigin(), null, null, null, null, null, null,
+                List.of(RideStatus.SCHEDULED), false, 0, 10, null, null, true);
+        assertEquals(1, upcoming.getContent().size());
+        assertSummaryOf(ride, upcoming.getContent().get(0));
+
+        // Including past rides always goes to Mongo
+        Slice<RideSummary> all = rideService.searchRides(ride.getOrigin(), null, null, null, null, null, null,
+                null, true, 0, 10, "departureTime", "asc", false);
+        assertEquals(1, all.getContent().size());
+        assertSummaryOf(ride, all.getContent().get(0));
+    }
+
+    @Test
+    void userRidesReturnSummaries() {
+        Ride ride = rideService.createRide(ride("mine-" + UUID.randomUUID()));
+
+        Slice<RideSummary> driven = rideService.getUserRides(ride.getDriverUsername(), true, PageRequest.of(0, 10), true);
+        assertEquals(1, driven.getContent().size());
+        assertSummaryOf(ride, driven.getContent().get(0));
+    }
+
+    private static Ride ride(String origin) {
+        Ride ride = new Ride();
+        ride.setDriverUsername("driver-" + origin);
+        ride.setOrigin(origin);
+        ride.setDestination("Downtown");
+        ride.setDepartureTime(LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.MILLIS));
+        ride.setAvailableSeats(3);
+        ride.setMaxPassengers(3);
+        ride.setPrice(7.5);
+        ride.setStatus(RideStatus.SCHEDULED);
+        ride.setCampusLocation("North Campus");
+        ride.setVehicleType("Sedan");
+        ride.setNotes("Not part of the summary");
+        return ride;
+    }
+
+    private static void assertSummaryOf(Ride ride, RideSummary summary) {
+        assertEquals(ride.getId(), summary.getId());
+        assertEquals(ride.getDriverUsername(), summary.getDriverUsername());
+        assertEquals(ride.getOrigin(), summary.getOrigin());
+        assertEquals(ride.getDestination(), summary.getDestination());
+        assertEquals(ride.getDepartureTime(), summary.getDepartureTime());
+        assertEquals(ride.getAvailableSeats(), summary.getAvailableSeats());
+        assertEquals(ride.getMaxPassengers(), summary.getMaxPassengers());
+        assertEquals(ride.getPrice(), summary.getPrice());
+        assertEquals(ride.getStatus(), summary.getStatus());
+        assertEquals(ride.getCampusLocation(), summary.getCampusLocation());
+        assertEquals(ride.getVehicleType(), summary.getVehicleType());
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.ridesharing.service;
+
+import com.example.ridesharing.MongoIntegrationTest;
+import com.example.ridesharing.repository.RideRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import static com.example.ridesharing.service.RideServiceConcurrencyTest.SEATS;
+import static com.example.ridesharing.service.RideServiceConcurrencyTest.assertNoOversell;
+import static com.example.ridesharing.service.RideServiceConcurrencyTest.bookConcurrently;
+import static com.example.ridesharing.service.RideServiceConcurrencyTest.createRide;
+
+/**
+ * The same booking race with the admission stripes turned off, so every caller runs its
+ * conditional findAndModify at once and only Mongo stands between them and an oversold ride.
+ */
+@TestPropertySource(properties = "ride.booking.admission.enabled=false")
+class SeatClaimConcurrencyTest extends MongoIntegrationTest {
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Test
+    void concurrentSeatClaimsNeverOversellARide() throws Exception {
+        String rideId = createRide(rideService, SEATS);
+        assertNoOversell(rideRepository, mongoTemplate, rideId, bookConcurrently(rideService, rideId));
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.ridesharing.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    private static final long TICK_MILLIS = 10;
+    private static final int WHEEL_SIZE = 64;           // one revolution is 640 ms
+    private static final int THREADS = 8;
+    private static final int ITEMS_PER_THREAD = 2_000;
+
+    @Test
+    void itemsScheduledWhileTheWheelTicksExpireOnTime() throws Exception {
+        Map<Long, Long> deadlines = new ConcurrentHashMap<>();
+        Map<Long, Long> lateness = new ConcurrentHashMap<>();
+        TimingWheel<Long> wheel = new TimingWheel<>("timing-wheel-test", TICK_MILLIS, WHEEL_SIZE,
+                item -> lateness.put(item, System.currentTimeMillis() - deadlines.get(item)));
+        try {
+            // Deadlines right at the next tick are the ones that race the slot being drained
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                long base = (long) t * ITEMS_PER_THREAD;
+                Thread thread = new Thread(() -> {
+                    for (long i = 0; i < ITEMS_PER_THREAD; i++) {
+                        long deadline = System.currentTimeMillis() + (i % 3) * TICK_MILLIS / 2;
+                        deadlines.put(base + i, deadline);
+                        wheel.schedule(base + i, deadline);
+                        if (i % 50 == 0) {
+                            Thread.onSpinWait();
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (lateness.size() < THREADS * ITEMS_PER_THREAD && System.nanoTime() < waitUntil) {
+                Thread.sleep(10);
+            }
+        } finally {
+            wheel.stop();
+        }
+
+        assertEquals(THREADS * ITEMS_PER_THREAD, lateness.size());
+        long worst = lateness.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        // A slot picked after it was drained would only fire a whole revolution later
+        assertTrue(worst < TICK_MILLIS * WHEEL_SIZE / 2, "an item expired " + worst + " ms late");
+    }
+}